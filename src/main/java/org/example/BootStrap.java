@@ -52,6 +52,8 @@ public class BootStrap
             .getInteger("poller.processor.engine.instances", 1);
     private static final int AVAILABILITY_POLLING_ENGINE_INSTANCES = MotaDataConfigUtil.getConfig()
             .getInteger("availability.polling.engine.instances", 1);
+    private static final int RESULT_WRITER_ENGINE_INSTANCES = MotaDataConfigUtil.getConfig()
+            .getInteger("result.writer.engine.instances", 1);
     private static final int DISCOVERY_ENGINE_INSTANCES = MotaDataConfigUtil.getConfig()
             .getInteger("discovery.engine.instances", 1);
     private static final int EVENTLOOP_POOL_SIZE = MotaDataConfigUtil.getConfig()
@@ -145,6 +147,14 @@ public class BootStrap
                         .setInstances(DATABASE_VERTICLE_INSTANCES)),
                 new VerticleConfig(Server.class, new DeploymentOptions()
                         .setInstances(SERVER_VERTICLE_INSTANCES)),
+                new VerticleConfig(ResultWriterEngine.class, new DeploymentOptions()
+                        .setInstances(RESULT_WRITER_ENGINE_INSTANCES)),
+                new VerticleConfig(SpoolReplayEngine.class, new DeploymentOptions()
+                        .setInstances(1)),
+                new VerticleConfig(RetentionEngine.class, new DeploymentOptions()
+                        .setInstances(1)),
+                new VerticleConfig(RollupEngine.class, new DeploymentOptions()
+                        .setInstances(1)),
                 new VerticleConfig(AvailabilityPollingEngine.class, new DeploymentOptions()
                         .setInstances(AVAILABILITY_POLLING_ENGINE_INSTANCES)),
                 new VerticleConfig(PollingProcessorEngine.class, new DeploymentOptions()
@@ -0,0 +1,289 @@
+package org.example.cache;
+
+import io.vertx.core.Future;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.BootStrap;
+import org.example.service.database.Database;
+import org.example.service.database.DatabaseService;
+import org.example.utils.Constants;
+import org.example.utils.MotaDataConfigUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory inventory of provisioned devices with their connection details and credentials.
+ * Loaded once at startup and kept coherent through the row change notifications of the provision
+ * and credential profile tables, so the polling engines resolve devices locally instead of querying the database every cycle.
+ * Cached device objects are shared, callers must not modify them.
+ */
+public class DeviceInventoryCache
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceInventoryCache.class);
+
+    // Config keys
+    private static final String REFRESH_DEBOUNCE = "device.inventory.refresh.debounce.in.milliseconds";
+
+    // Defaults
+    private static final long DEFAULT_REFRESH_DEBOUNCE = 200;
+
+    private static final DatabaseService DATABASE_SERVICE = DatabaseService.createProxy(Database.DB_SERVICE_ADDRESS);
+
+    private static final String SELECT_DEVICES = "SELECT provision.id AS id, provision.ip, provision.port, " +
+            "provision.credential_profile_id, cp.credentials, cp.system_type " +
+            "FROM provision JOIN credential_profiles cp ON provision.credential_profile_id = cp.id WHERE provision.status = true";
+
+    private static final String FETCH_ALL_DEVICES_QUERY = SELECT_DEVICES;
+
+    private static final String FETCH_DEVICES_QUERY = SELECT_DEVICES + " AND provision.id = ANY($1::int[])";
+
+    private static final String FETCH_DEVICES_BY_CREDENTIAL_QUERY = SELECT_DEVICES + " AND provision.credential_profile_id = $1";
+
+    private static final Map<Integer, JsonObject> DEVICES = new ConcurrentHashMap<>();
+
+    // Provision IDs changed since the last refresh, reloaded together once the debounce window ends
+    private static final Set<Integer> PENDING_REFRESHES = ConcurrentHashMap.newKeySet();
+
+    private static final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    private static MessageConsumer<JsonObject> rowChangesConsumer;
+
+    private DeviceInventoryCache() {}
+
+    /**
+     * Replaces the cache content with all active provisioned devices.
+     *
+     * @return a Future with the loaded devices
+     */
+    public static Future<JsonArray> load()
+    {
+        listen();
+
+        return cache(DATABASE_SERVICE.executeQuery(new JsonObject()
+                        .put(Constants.QUERY, FETCH_ALL_DEVICES_QUERY)
+                        .put(Constants.WORKLOAD, Constants.WORKLOAD_INGESTION)))
+                .onSuccess(devices ->
+                {
+                    DEVICES.keySet().retainAll(devices.stream().map(device -> ((JsonObject) device).getInteger(Constants.ID))
+                            .collect(Collectors.toSet()));
+
+                    LOGGER.info("Device inventory loaded with {} devices", devices.size());
+                });
+    }
+
+    /**
+     * Resolves devices by ID. Cached devices are returned right away, misses are fetched once and cached.
+     * IDs that are not active provisioned devices are left out of the result, and so are misses whose lookup failed.
+     *
+     * @param deviceIds JsonArray of provision IDs
+     * @return a Future with the device objects
+     */
+    public static Future<JsonArray> getDevices(JsonArray deviceIds)
+    {
+        var devices = new JsonArray();
+
+        var missingIds = new JsonArray();
+
+        for (var index = 0; index < deviceIds.size(); index++)
+        {
+            var device = DEVICES.get(deviceIds.getInteger(index));
+
+            if (device != null)
+            {
+                devices.add(device);
+            }
+            else
+            {
+                missingIds.add(deviceIds.getInteger(index));
+            }
+        }
+
+        if (missingIds.isEmpty())
+        {
+            return Future.succeededFuture(devices);
+        }
+
+        // Misses are looked up with a single int[] parameter, one prepared statement for any batch size.
+        // A failed lookup only leaves the missing devices out, the cached ones are still polled
+        return cache(DATABASE_SERVICE.executeColumnarQuery(new JsonObject()
+                        .put(Constants.QUERY, FETCH_DEVICES_QUERY)
+                        .put(Constants.PARAMS, new JsonArray().add(missingIds))
+                        .put(Constants.WORKLOAD, Constants.WORKLOAD_INGESTION)))
+                .map(devices::addAll)
+                .recover(error ->
+                {
+                    LOGGER.error("Error in fetching devices {}, skipping them: {}", missingIds.encode(), error.getMessage());
+
+                    return Future.succeededFuture(devices);
+                });
+    }
+
+    /**
+     * Schedules a device reload, dropping it when it is no longer actively provisioned.
+     * Reloads requested within the debounce window are fetched together with a single query.
+     *
+     * @param deviceId provision ID
+     */
+    public static void refreshDevice(int deviceId)
+    {
+        PENDING_REFRESHES.add(deviceId);
+
+        if (refreshScheduled.compareAndSet(Constants.FALSE, Constants.TRUE))
+        {
+            BootStrap.getVertx().setTimer(MotaDataConfigUtil.getConfig().getLong(REFRESH_DEBOUNCE, DEFAULT_REFRESH_DEBOUNCE),
+                    id -> refreshPendingDevices());
+        }
+    }
+
+    /**
+     * Reloads every device using the given credential profile.
+     *
+     * @param credentialProfileId credential profile ID
+     */
+    public static void refreshByCredentialProfile(int credentialProfileId)
+    {
+        cache(DATABASE_SERVICE.executeQuery(new JsonObject()
+                .put(Constants.QUERY, FETCH_DEVICES_BY_CREDENTIAL_QUERY)
+                .put(Constants.PARAMS, new JsonArray().add(credentialProfileId))
+                .put(Constants.WORKLOAD, Constants.WORKLOAD_INGESTION)));
+    }
+
+    /**
+     * Drops a device from the cache.
+     *
+     * @param deviceId provision ID
+     */
+    public static void removeDevice(int deviceId)
+    {
+        DEVICES.remove(deviceId);
+    }
+
+    /**
+     * Subscribes once to row change notifications.
+     */
+    private static synchronized void listen()
+    {
+        if (rowChangesConsumer == null)
+        {
+            rowChangesConsumer = BootStrap.getVertx().eventBus()
+                    .localConsumer(Constants.ROW_CHANGES_ADDRESS, DeviceInventoryCache::handleRowChange);
+        }
+    }
+
+    /**
+     * Applies a row change to the affected devices only. Discovery profile changes are ignored,
+     * provision rows keep their own copy of the connection details.
+     *
+     * @param message JsonObject with the changed table, operation and row ID
+     */
+    private static void handleRowChange(Message<JsonObject> message)
+    {
+        try
+        {
+            var change = message.body();
+
+            var operation = change.getString(Constants.ROW_CHANGE_OPERATION);
+
+            if (Constants.ROW_CHANGE_RESYNC.equals(operation))
+            {
+                load();
+
+                return;
+            }
+
+            var table = change.getString(Constants.ROW_CHANGE_TABLE);
+
+            if (Constants.PROVISION_TABLE.equals(table))
+            {
+                if (Constants.DB_DELETE.equals(operation))
+                {
+                    removeDevice(change.getInteger(Constants.ID));
+                }
+                else
+                {
+                    refreshDevice(change.getInteger(Constants.ID));
+                }
+            }
+            else if (Constants.CREDENTIAL_PROFILES_TABLE.equals(table) && Constants.DB_UPDATE.equals(operation))
+            {
+                refreshByCredentialProfile(change.getInteger(Constants.ID));
+            }
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Error in applying row change to device inventory: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Reloads the devices changed during the debounce window, IDs changed meanwhile wait for the next window.
+     */
+    private static void refreshPendingDevices()
+    {
+        refreshScheduled.set(Constants.FALSE);
+
+        var deviceIds = new JsonArray();
+
+        for (var iterator = PENDING_REFRESHES.iterator(); iterator.hasNext(); )
+        {
+            deviceIds.add(iterator.next());
+
+            iterator.remove();
+        }
+
+        if (deviceIds.isEmpty())
+        {
+            return;
+        }
+
+        cache(DATABASE_SERVICE.executeColumnarQuery(new JsonObject()
+                        .put(Constants.QUERY, FETCH_DEVICES_QUERY)
+                        .put(Constants.PARAMS, new JsonArray().add(deviceIds))
+                        .put(Constants.WORKLOAD, Constants.WORKLOAD_INGESTION)))
+                .onComplete(result ->
+                {
+                    // Devices left out of the result are no longer active, on failure every one is fetched again on its next use
+                    var activeIds = result.succeeded()
+                            ? result.result().stream().map(device -> ((JsonObject) device).getInteger(Constants.ID)).collect(Collectors.toSet())
+                            : Set.<Integer>of();
+
+                    for (var index = 0; index < deviceIds.size(); index++)
+                    {
+                        if (!activeIds.contains(deviceIds.getInteger(index)))
+                        {
+                            DEVICES.remove(deviceIds.getInteger(index));
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Caches every device returned by an inventory query.
+     */
+    private static Future<JsonArray> cache(Future<JsonObject> queryResult)
+    {
+        return queryResult
+                .map(result ->
+                {
+                    var devices = result.getJsonArray(Constants.DATA, new JsonArray());
+
+                    for (var index = 0; index < devices.size(); index++)
+                    {
+                        var device = devices.getJsonObject(index);
+
+                        DEVICES.put(device.getInteger(Constants.ID), device);
+                    }
+
+                    return devices;
+                })
+                .onFailure(error -> LOGGER.error("Error in fetching device inventory: {}", error.getMessage()));
+    }
+}
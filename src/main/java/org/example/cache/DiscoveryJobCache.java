@@ -0,0 +1,124 @@
+package org.example.cache;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.utils.Constants;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of the discovery jobs of this process: status, progress and the per device results gathered so far.
+ * Jobs are written by the discovery engine and read by the discovery routes, each job is guarded by its own lock.
+ */
+public class DiscoveryJobCache
+{
+    private static final Map<String, JsonObject> jobs = new ConcurrentHashMap<>();
+
+    private DiscoveryJobCache() {}
+
+    /**
+     * Registers a new running job.
+     *
+     * @param total number of devices to discover, a range profile counting each of its addresses
+     * @return ID of the job
+     */
+    public static String createJob(long total)
+    {
+        var jobId = UUID.randomUUID().toString();
+
+        jobs.put(jobId, new JsonObject()
+                .put(Constants.JOB_ID, jobId)
+                .put(Constants.STATUS, Constants.JOB_RUNNING)
+                .put(Constants.TOTAL, total)
+                .put(Constants.PROCESSED, 0L)
+                .put(Constants.RESULTS, new JsonArray()));
+
+        return jobId;
+    }
+
+    /**
+     * Appends results and advances the progress. A range profile yields results only for its responders,
+     * so progress is counted in processed devices and swept addresses rather than results.
+     *
+     * @param jobId     job ID
+     * @param results   per device results, may be empty
+     * @param processed number of devices or swept addresses completed
+     * @return position of the first appended result within the job results, or -1 if the job is unknown
+     */
+    public static int addResults(String jobId, JsonArray results, int processed)
+    {
+        var job = jobs.get(jobId);
+
+        if (job == null)
+        {
+            return -1;
+        }
+
+        synchronized (job)
+        {
+            var jobResults = job.getJsonArray(Constants.RESULTS);
+
+            var index = jobResults.size();
+
+            jobResults.addAll(results);
+
+            job.put(Constants.PROCESSED, job.getLong(Constants.PROCESSED) + processed);
+
+            return index;
+        }
+    }
+
+    /**
+     * Marks a job as finished.
+     *
+     * @param jobId        job ID
+     * @param errorMessage reason the job failed, null if it completed
+     */
+    public static void finishJob(String jobId, String errorMessage)
+    {
+        var job = jobs.get(jobId);
+
+        if (job == null)
+        {
+            return;
+        }
+
+        synchronized (job)
+        {
+            job.put(Constants.STATUS, errorMessage == null ? Constants.JOB_COMPLETED : Constants.JOB_FAILED);
+
+            if (errorMessage != null)
+            {
+                job.put(Constants.ERROR, errorMessage);
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of a job.
+     *
+     * @param jobId job ID
+     * @return copy of the job with its results so far, or null if the job is unknown or expired
+     */
+    public static JsonObject getJob(String jobId)
+    {
+        var job = jobs.get(jobId);
+
+        if (job == null)
+        {
+            return null;
+        }
+
+        synchronized (job)
+        {
+            return job.copy();
+        }
+    }
+
+    public static void removeJob(String jobId)
+    {
+        jobs.remove(jobId);
+    }
+}
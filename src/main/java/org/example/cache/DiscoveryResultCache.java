@@ -0,0 +1,104 @@
+package org.example.cache;
+
+import io.vertx.core.json.JsonObject;
+import org.example.utils.Constants;
+import org.example.utils.MotaDataConfigUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Successful discovery checks of the last few minutes, keyed on ip, port, credential profile and credential version.
+ * A target verified with the same credentials is not pinged nor SSH checked again until its entry expires,
+ * editing the credential profile bumps its version in the database and so invalidates its entries.
+ * Failed checks are never cached, a device coming up is found on the next run.
+ */
+public class DiscoveryResultCache
+{
+    // Config keys
+    private static final String TTL = "discovery.result.cache.ttl.in.milliseconds";
+
+    private static final String MAX_ENTRIES = "discovery.result.cache.max.entries";
+
+    // Defaults
+    private static final long DEFAULT_TTL = 600_000;
+
+    private static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private static final char KEY_SEPARATOR = '|';
+
+    private static final String STEP = "step";
+
+    private static final Map<String, CachedResult> results = new ConcurrentHashMap<>();
+
+    private DiscoveryResultCache() {}
+
+    /**
+     * Returns the cached result of a target.
+     *
+     * @param deviceData device holding ip, port, credential_profile_id and credential_version
+     * @return copy of the cached result holding success and step, or null if absent or expired
+     */
+    public static JsonObject get(JsonObject deviceData)
+    {
+        var key = toKey(deviceData);
+
+        var cachedResult = results.get(key);
+
+        if (cachedResult == null)
+        {
+            return null;
+        }
+
+        if (cachedResult.expiresAt() < System.currentTimeMillis())
+        {
+            results.remove(key, cachedResult);
+
+            return null;
+        }
+
+        return cachedResult.result().copy();
+    }
+
+    /**
+     * Caches the result of a target if the check succeeded.
+     * Expired entries are purged once the cache grows past its bound, a full cache of live entries takes no more.
+     *
+     * @param deviceData device holding ip, port, credential_profile_id and credential_version
+     * @param result     result holding success and step
+     */
+    public static void put(JsonObject deviceData, JsonObject result)
+    {
+        if (!Boolean.TRUE.equals(result.getBoolean(Constants.SUCCESS)))
+        {
+            return;
+        }
+
+        var now = System.currentTimeMillis();
+
+        if (results.size() >= MotaDataConfigUtil.getConfig().getInteger(MAX_ENTRIES, DEFAULT_MAX_ENTRIES))
+        {
+            results.values().removeIf(cachedResult -> cachedResult.expiresAt() < now);
+
+            if (results.size() >= MotaDataConfigUtil.getConfig().getInteger(MAX_ENTRIES, DEFAULT_MAX_ENTRIES))
+            {
+                return;
+            }
+        }
+
+        // Only the outcome is kept, the same target may be answered for a single address or a range profile
+        results.put(toKey(deviceData), new CachedResult(new JsonObject()
+                .put(Constants.SUCCESS, result.getBoolean(Constants.SUCCESS))
+                .put(STEP, result.getString(STEP)),
+                now + MotaDataConfigUtil.getConfig().getLong(TTL, DEFAULT_TTL)));
+    }
+
+    private static String toKey(JsonObject deviceData)
+    {
+        return deviceData.getString(Constants.IP) + KEY_SEPARATOR + deviceData.getInteger(Constants.PORT)
+                + KEY_SEPARATOR + deviceData.getInteger(Constants.CREDENTIAL_PROFILE_ID)
+                + KEY_SEPARATOR + deviceData.getInteger(Constants.CREDENTIAL_VERSION);
+    }
+
+    private record CachedResult(JsonObject result, long expiresAt) {}
+}
@@ -0,0 +1,105 @@
+package org.example.cache;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.service.database.Database;
+import org.example.service.database.DatabaseService;
+import org.example.utils.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latest polled metrics per device, updated by the ingest path so current device state is served without a database hit.
+ * Warmed once at startup from the most recent results of the last day.
+ */
+public class MetricsCacheEngine
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsCacheEngine.class);
+
+    private static final String FETCH_LATEST_RESULTS_QUERY = """
+            SELECT DISTINCT ON (provision_id) provision_id AS id, metrics, polled_at
+            FROM polled_results
+            WHERE polled_at > now() - interval '1 day'
+            ORDER BY provision_id, polled_at DESC
+            """;
+
+    private static final Map<Integer, JsonObject> latestMetricsMap = new ConcurrentHashMap<>();
+
+    private static boolean loaded;
+
+    private MetricsCacheEngine() {}
+
+    /**
+     * Loads the latest result of every device polled during the last day, once per process.
+     * Samples already set by the ingest path are newer and are kept.
+     */
+    public static synchronized void load()
+    {
+        if (loaded)
+        {
+            return;
+        }
+
+        loaded = Constants.TRUE;
+
+        DatabaseService.createProxy(Database.DB_SERVICE_ADDRESS)
+                .executeQuery(new JsonObject()
+                        .put(Constants.QUERY, FETCH_LATEST_RESULTS_QUERY)
+                        .put(Constants.WORKLOAD, Constants.WORKLOAD_READ))
+                .onSuccess(result ->
+                {
+                    var rows = result.getJsonArray(Constants.DATA, new JsonArray());
+
+                    for (var index = 0; index < rows.size(); index++)
+                    {
+                        var row = rows.getJsonObject(index);
+
+                        latestMetricsMap.putIfAbsent(row.getInteger(Constants.ID), row);
+                    }
+
+                    LOGGER.info("Metrics cache warmed with {} devices", rows.size());
+                })
+                .onFailure(error -> LOGGER.error("Error in warming metrics cache: {}", error.getMessage()));
+    }
+
+    /**
+     * Stores the latest metrics of a device.
+     *
+     * @param deviceId provision ID
+     * @param metrics  polled metrics
+     * @param polledAt time the metrics were polled at
+     */
+    public static void setLatestMetrics(Integer deviceId, JsonObject metrics, String polledAt)
+    {
+        latestMetricsMap.put(deviceId, new JsonObject()
+                .put(Constants.ID, deviceId)
+                .put(Constants.METRICS, metrics)
+                .put(Constants.POLLED_AT, polledAt));
+    }
+
+    /**
+     * Returns the latest metrics of a device together with its current availability.
+     *
+     * @param deviceId provision ID
+     * @return JsonObject with id, metrics, polled_at and status, or null if the device was not polled yet
+     */
+    public static JsonObject getLatestMetrics(Integer deviceId)
+    {
+        var latestMetrics = latestMetricsMap.get(deviceId);
+
+        if (latestMetrics == null)
+        {
+            return null;
+        }
+
+        return latestMetrics.copy().put(Constants.STATUS, AvailabilityCacheEngine.getDeviceStatus(deviceId));
+    }
+
+    public static void removeDevice(Integer deviceId)
+    {
+        latestMetricsMap.remove(deviceId);
+    }
+}
@@ -1,16 +1,25 @@
 package org.example.routes;
 
+import io.vertx.core.Future;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import org.example.service.database.DatabaseService;
 import org.example.service.database.Database;
 import org.example.utils.Constants;
+import org.example.utils.MotaDataConfigUtil;
 import org.example.utils.RequestValidator;
 import org.example.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
 public abstract class AbstractRouter implements RouterHandler
 {
     protected static final Logger LOGGER = LoggerFactory.getLogger(AbstractRouter.class);
@@ -19,11 +28,50 @@ public abstract class AbstractRouter implements RouterHandler
 
     protected static final String ERROR_MESSAGE = "Error while processing request";
 
-    protected final StringBuilder reusableStringQuery = new StringBuilder();
+    // List query parameters
+    private static final String FIELDS = "fields";
+
+    private static final String IP_PREFIX = "ip_prefix";
+
+    private static final String MESSAGE_INVALID_LIST_PARAMETER = "Invalid or unsupported list parameter: ";
+
+    // Columns a list may project and filter on, per table
+    private static final Map<String, List<String>> LIST_COLUMNS = Map.of(
+            Constants.CREDENTIAL_PROFILES_TABLE,
+            List.of(Constants.ID, "credential_profile_name", "system_type", Constants.CREDENTIALS),
+            Constants.DISCOVERY_PROFILES_TABLE,
+            List.of(Constants.ID, "discovery_profile_name", Constants.CREDENTIAL_PROFILE_ID, Constants.IP, Constants.PORT,
+                    Constants.STATUS),
+            Constants.PROVISION_TABLE,
+            List.of(Constants.ID, Constants.CREDENTIAL_PROFILE_ID, Constants.IP, Constants.PORT, Constants.STATUS));
+
+    // Bulk operations
+    private static final String ITEM = "item";
+
+    private static final String MESSAGE_ITEMS_REQUIRED = "Body must be a non empty array of objects";
+
+    private static final String MESSAGE_ITEM_NOT_OBJECT = "Item must be an object";
+
+    private static final String MESSAGE_DUPLICATE_ITEM = "Duplicate item in request";
+
+    // Config keys
+    private static final String LIST_DEFAULT_LIMIT = "list.page.default.size";
+
+    private static final String LIST_MAX_LIMIT = "list.page.max.size";
+
+    // Defaults
+    private static final int DEFAULT_LIST_DEFAULT_LIMIT = 100;
+
+    private static final int DEFAULT_LIST_MAX_LIMIT = 1000;
+
+    private final int listDefaultLimit = MotaDataConfigUtil.getConfig().getInteger(LIST_DEFAULT_LIMIT, DEFAULT_LIST_DEFAULT_LIMIT);
 
-    protected final JsonArray reusableQueryParams = new JsonArray();
+    private final int listMaxLimit = MotaDataConfigUtil.getConfig().getInteger(LIST_MAX_LIMIT, DEFAULT_LIST_MAX_LIMIT);
 
-    protected final JsonObject reusableQueryObject = new JsonObject();
+    // Query contexts kept for reuse, requests beyond it allocate a context of their own
+    private static final int QUERY_CONTEXT_POOL_SIZE = 32;
+
+    private final BlockingQueue<QueryContext> queryContexts = new ArrayBlockingQueue<>(QUERY_CONTEXT_POOL_SIZE);
 
     void handleCreate(RoutingContext context)
     {
@@ -33,16 +81,17 @@ public abstract class AbstractRouter implements RouterHandler
             {
                 if (isInvalidBody(body.toJsonObject(), context)) return;
 
-                setReusableObjects();
+                var queryContext = acquireQueryContext();
 
-                reusableQueryObject.put(Constants.OPERATION, Constants.DB_INSERT)
+                queryContext.input().put(Constants.OPERATION, Constants.DB_INSERT)
                         .put(Constants.TABLE_NAME, Utils.getTableNameFromContext(context))
                         .put(Constants.DATA, body.toJsonObject());
 
-                var query = Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams);
+                var query = queryContext.build();
 
                 DATABASE_SERVICE
                         .executeQuery(query)
+                        .onComplete(asyncResult -> releaseQueryContext(queryContext))
                         .onSuccess(reply -> context.response().setStatusCode(Constants.SC_201).end(reply.encode()))
                         .onFailure(error -> dbServiceFailed(context, error.getMessage()));
 
@@ -64,18 +113,19 @@ public abstract class AbstractRouter implements RouterHandler
             {
                 if (isInvalidId(context.pathParam(Constants.ID), context) || isInvalidBody(body.toJsonObject(), context)) return;
 
-                setReusableObjects();
+                var queryContext = acquireQueryContext();
 
-                reusableQueryObject
+                queryContext.input()
                         .put(Constants.OPERATION, Constants.DB_UPDATE)
                         .put(Constants.TABLE_NAME, Utils.getTableNameFromContext(context))
                         .put(Constants.DATA, body.toJsonObject())
                         .put(Constants.CONDITIONS , new JsonObject().put(Constants.ID, Integer.parseInt(context.pathParam(Constants.ID))));
 
-                var query = Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams);
+                var query = queryContext.build();
 
                 DATABASE_SERVICE
                         .executeQuery(query)
+                        .onComplete(asyncResult -> releaseQueryContext(queryContext))
                         .onSuccess(reply ->
                                 context.response()
                                         .setStatusCode(Constants.SC_201)
@@ -98,21 +148,25 @@ public abstract class AbstractRouter implements RouterHandler
         {
             if (isInvalidId(context.pathParam(Constants.ID), context)) return;
 
-            setReusableObjects();
+            var queryContext = acquireQueryContext();
 
-            reusableQueryObject
+            queryContext.input()
                     .put(Constants.OPERATION, Constants.DB_SELECT)
                     .put(Constants.TABLE_NAME, Utils.getTableNameFromContext(context))
                     .put(Constants.CONDITIONS , new JsonObject().put(Constants.ID, Integer.parseInt(context.pathParam(Constants.ID))));
 
-            var query = Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams);
+            // Plain reads may be served by a read replica
+            var query = queryContext.build()
+                    .put(Constants.WORKLOAD, Constants.WORKLOAD_READ);
 
+            // Rows are encoded straight into the response buffer
             DATABASE_SERVICE
-                    .executeQuery(query)
+                    .executeQueryToBuffer(query)
+                    .onComplete(asyncResult -> releaseQueryContext(queryContext))
                     .onSuccess(reply ->
                             context.response()
                                     .setStatusCode(Constants.SC_200)
-                                    .end(reply.toString())
+                                    .end(reply)
                     )
                     .onFailure(error -> dbServiceFailed(context, error.getMessage()));
         }
@@ -131,17 +185,18 @@ public abstract class AbstractRouter implements RouterHandler
         {
             if (isInvalidId(context.pathParam(Constants.ID), context)) return;
 
-            setReusableObjects();
+            var queryContext = acquireQueryContext();
 
-            reusableQueryObject
+            queryContext.input()
                     .put(Constants.OPERATION, Constants.DB_DELETE)
                     .put(Constants.TABLE_NAME, Utils.getTableNameFromContext(context))
                     .put(Constants.CONDITIONS, new JsonObject().put(Constants.ID, Integer.parseInt(context.pathParam(Constants.ID))));
 
-            var query = Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams);
+            var query = queryContext.build();
 
             DATABASE_SERVICE
                     .executeQuery(query)
+                    .onComplete(asyncResult -> releaseQueryContext(queryContext))
                     .onSuccess(reply -> context.response().setStatusCode(Constants.SC_200).end(reply.encode()))
                     .onFailure(error -> dbServiceFailed(context, error.getMessage()));
         }
@@ -153,18 +208,43 @@ public abstract class AbstractRouter implements RouterHandler
         }
     }
 
+    /**
+     * Lists one keyset page of the table, ordered by id.
+     * Query parameters: limit (page size), after (id cursor, from next_cursor of the previous page),
+     * fields (comma separated projection) and the filters status, ip_prefix and credential_profile_id
+     * where the table has those columns.
+     */
     void handleGetAll(RoutingContext context)
     {
         try
         {
-            setReusableObjects();
+            var table = getListTableName(context);
+
+            var columns = LIST_COLUMNS.get(table);
+
+            var queryContext = acquireQueryContext();
+
+            queryContext.input().put(Constants.OPERATION, Constants.DB_SELECT)
+                    .put(Constants.TABLE_NAME, table);
+
+            var invalidParameter = putListParameters(context, queryContext, columns);
 
-            reusableQueryObject.put(Constants.OPERATION, Constants.DB_SELECT)
-                    .put(Constants.TABLE_NAME, Utils.getTableNameFromContext(context));
+            if (invalidParameter != null)
+            {
+                releaseQueryContext(queryContext);
+
+                context.response().setStatusCode(Constants.SC_400).end(new JsonObject()
+                        .put(Constants.SUCCESS, Constants.FALSE)
+                        .put(Constants.ERROR, MESSAGE_INVALID_LIST_PARAMETER + invalidParameter).encode());
 
-            DATABASE_SERVICE.executeQuery(Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams))
+                return;
+            }
+
+            DATABASE_SERVICE.executeQueryToBuffer(queryContext.build()
+                            .put(Constants.WORKLOAD, Constants.WORKLOAD_READ))
+                    .onComplete(asyncResult -> releaseQueryContext(queryContext))
                     .onSuccess(reply -> context.response().setStatusCode(Constants.SC_200)
-                            .end(reply.toString()))
+                            .end(reply))
                     .onFailure(error -> dbServiceFailed(context, error.getMessage()));
         }
         catch (Exception exception)
@@ -176,6 +256,426 @@ public abstract class AbstractRouter implements RouterHandler
 
     }
 
+    /**
+     * Returns the table listed by {@link #handleGetAll(RoutingContext)}.
+     *
+     * @param context routing context of the request
+     * @return table name
+     */
+    protected String getListTableName(RoutingContext context)
+    {
+        return Utils.getTableNameFromContext(context);
+    }
+
+    /**
+     * Validates the list query parameters and puts the page, projection and filters into the query description.
+     * Only whitelisted columns of the table reach the SQL text, values are always bound as parameters.
+     *
+     * @param context      routing context of the request
+     * @param queryContext query context of the request
+     * @param columns      columns of the listed table
+     * @return name of the first invalid parameter, or null if all are valid
+     */
+    private String putListParameters(RoutingContext context, QueryContext queryContext, List<String> columns)
+    {
+        var request = context.request();
+
+        var limit = listDefaultLimit;
+
+        if (request.getParam(Constants.LIMIT) != null)
+        {
+            try
+            {
+                limit = Integer.parseInt(request.getParam(Constants.LIMIT));
+            }
+            catch (NumberFormatException exception)
+            {
+                return Constants.LIMIT;
+            }
+
+            if (limit < 1 || limit > listMaxLimit) return Constants.LIMIT;
+        }
+
+        queryContext.input().put(Constants.LIMIT, limit);
+
+        if (request.getParam(Constants.AFTER) != null)
+        {
+            try
+            {
+                queryContext.input().put(Constants.AFTER, Integer.parseInt(request.getParam(Constants.AFTER)));
+            }
+            catch (NumberFormatException exception)
+            {
+                return Constants.AFTER;
+            }
+        }
+
+        var fields = request.getParam(FIELDS);
+
+        if (fields != null && !fields.isBlank())
+        {
+            // id is always selected, it is the cursor of the next page
+            var projection = new JsonArray().add(Constants.ID);
+
+            for (var field : fields.split(Constants.COMMA_SEPARATOR))
+            {
+                field = field.trim();
+
+                if (!columns.contains(field)) return FIELDS;
+
+                if (!projection.contains(field))
+                {
+                    projection.add(field);
+                }
+            }
+
+            queryContext.input().put(Constants.COLUMNS, projection);
+        }
+
+        var conditions = new JsonObject();
+
+        var status = request.getParam(Constants.STATUS);
+
+        if (status != null)
+        {
+            if (!columns.contains(Constants.STATUS) || !(status.equals("true") || status.equals("false"))) return Constants.STATUS;
+
+            conditions.put(Constants.STATUS, Boolean.parseBoolean(status));
+        }
+
+        var credentialProfileId = request.getParam(Constants.CREDENTIAL_PROFILE_ID);
+
+        if (credentialProfileId != null)
+        {
+            if (!columns.contains(Constants.CREDENTIAL_PROFILE_ID)) return Constants.CREDENTIAL_PROFILE_ID;
+
+            try
+            {
+                conditions.put(Constants.CREDENTIAL_PROFILE_ID, Integer.parseInt(credentialProfileId));
+            }
+            catch (NumberFormatException exception)
+            {
+                return Constants.CREDENTIAL_PROFILE_ID;
+            }
+        }
+
+        queryContext.input().put(Constants.CONDITIONS, conditions);
+
+        var ipPrefix = request.getParam(IP_PREFIX);
+
+        if (ipPrefix != null)
+        {
+            if (!columns.contains(Constants.IP) || ipPrefix.isEmpty()) return IP_PREFIX;
+
+            queryContext.input().put(Constants.PREFIXES, new JsonObject().put(Constants.IP, ipPrefix));
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates many rows from an array body in one statement. Every item is validated against the table schema,
+     * later items repeating the unique name of an earlier one are rejected, the rest is inserted by {@link #getBulkQuery}.
+     * Replies one entry per item, holding either the new id or the error of that item.
+     */
+    void handleBulkCreate(RoutingContext context)
+    {
+        context.request().bodyHandler(body ->
+        {
+            try
+            {
+                var items = body.length() == 0 ? null : body.toJsonArray();
+
+                if (items == null || items.isEmpty())
+                {
+                    context.response().setStatusCode(Constants.SC_400).end(new JsonObject()
+                            .put(Constants.SUCCESS, Constants.FALSE).put(Constants.ERROR, MESSAGE_ITEMS_REQUIRED).encode());
+
+                    return;
+                }
+
+                var table = Utils.getTableNameFromContext(context);
+
+                var results = new JsonObject[items.size()];
+
+                var indexes = new JsonArray();
+
+                var params = new JsonArray();
+
+                getBulkColumns().forEach(column -> params.add(new JsonArray()));
+
+                var names = new HashSet<String>();
+
+                for (var index = 0; index < items.size(); index++)
+                {
+                    var error = validateBulkItem(table, items.getValue(index));
+
+                    if (error.isEmpty() && !names.add(items.getJsonObject(index).getString(getBulkColumns().get(0))))
+                    {
+                        error = MESSAGE_DUPLICATE_ITEM;
+                    }
+
+                    if (!error.isEmpty())
+                    {
+                        results[index] = new JsonObject().put(Constants.INDEX, index).put(Constants.ERROR, error);
+
+                        continue;
+                    }
+
+                    indexes.add(index);
+
+                    appendBulkColumns(params, 0, items.getJsonObject(index));
+                }
+
+                executeBulk(context, getBulkQuery(Constants.DB_INSERT), params, indexes, results, Constants.SC_201);
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error(ERROR_MESSAGE, exception);
+
+                context.response().setStatusCode(Constants.SC_400).end(exception.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Updates many rows from an array body in one statement, every item holds the id of its row next to the
+     * full row validated against the table schema. Items repeating an id or unique name of an earlier item are rejected.
+     * Replies one entry per item, holding either the id or the error of that item.
+     */
+    void handleBulkUpdate(RoutingContext context)
+    {
+        context.request().bodyHandler(body ->
+        {
+            try
+            {
+                var items = body.length() == 0 ? null : body.toJsonArray();
+
+                if (items == null || items.isEmpty())
+                {
+                    context.response().setStatusCode(Constants.SC_400).end(new JsonObject()
+                            .put(Constants.SUCCESS, Constants.FALSE).put(Constants.ERROR, MESSAGE_ITEMS_REQUIRED).encode());
+
+                    return;
+                }
+
+                var table = Utils.getTableNameFromContext(context);
+
+                var results = new JsonObject[items.size()];
+
+                var indexes = new JsonArray();
+
+                var params = new JsonArray().add(new JsonArray());
+
+                getBulkColumns().forEach(column -> params.add(new JsonArray()));
+
+                var ids = new HashSet<Integer>();
+
+                var names = new HashSet<String>();
+
+                for (var index = 0; index < items.size(); index++)
+                {
+                    var item = items.getValue(index) instanceof JsonObject jsonObject ? jsonObject.copy() : null;
+
+                    var id = item == null ? null : item.remove(Constants.ID);
+
+                    var error = !(id instanceof Integer rowId) || rowId < 1
+                            ? Constants.MESSAGE_ID_INVALID
+                            : validateBulkItem(table, item);
+
+                    if (error.isEmpty() && (!ids.add((Integer) id) || !names.add(item.getString(getBulkColumns().get(0)))))
+                    {
+                        error = MESSAGE_DUPLICATE_ITEM;
+                    }
+
+                    if (!error.isEmpty())
+                    {
+                        results[index] = new JsonObject().put(Constants.INDEX, index).put(Constants.ERROR, error);
+
+                        continue;
+                    }
+
+                    indexes.add(index);
+
+                    params.getJsonArray(0).add(id);
+
+                    appendBulkColumns(params, 1, item);
+                }
+
+                executeBulk(context, getBulkQuery(Constants.DB_UPDATE), params, indexes, results, Constants.SC_200);
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error(ERROR_MESSAGE, exception);
+
+                context.response().setStatusCode(Constants.SC_400).end(exception.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Deletes the rows whose IDs are in the ids array of the body in one statement.
+     * Replies one entry per ID, holding either the id or the reason it was not deleted.
+     */
+    void handleBulkDelete(RoutingContext context)
+    {
+        context.request().bodyHandler(body ->
+        {
+            try
+            {
+                var items = body.length() == 0 ? null : body.toJsonObject().getJsonArray(Constants.IDS);
+
+                if (items == null || items.isEmpty())
+                {
+                    context.response().setStatusCode(Constants.SC_400).end(new JsonObject()
+                            .put(Constants.SUCCESS, Constants.FALSE).put(Constants.ERROR, MESSAGE_ITEMS_REQUIRED).encode());
+
+                    return;
+                }
+
+                var results = new JsonObject[items.size()];
+
+                var indexes = new JsonArray();
+
+                var ids = new HashSet<Integer>();
+
+                var params = new JsonArray().add(new JsonArray());
+
+                for (var index = 0; index < items.size(); index++)
+                {
+                    var id = items.getValue(index);
+
+                    if (!(id instanceof Integer rowId) || rowId < 1 || !ids.add(rowId))
+                    {
+                        results[index] = new JsonObject().put(Constants.INDEX, index)
+                                .put(Constants.ERROR, id instanceof Integer rowId && rowId > 0
+                                        ? MESSAGE_DUPLICATE_ITEM
+                                        : Constants.MESSAGE_ID_INVALID);
+
+                        continue;
+                    }
+
+                    indexes.add(index);
+
+                    params.getJsonArray(0).add(id);
+                }
+
+                executeBulk(context, getBulkQuery(Constants.DB_DELETE), params, indexes, results, Constants.SC_200);
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error(ERROR_MESSAGE, exception);
+
+                context.response().setStatusCode(Constants.SC_400).end(exception.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Returns the statement of a bulk operation. It binds its parameters as arrays, in the order of
+     * {@link #getBulkColumns()} preceded by the IDs for updates, or the IDs alone for deletes,
+     * and returns one row per item with its 1-based position as item, the row id, and the error if it was not applied.
+     *
+     * @param operation one of {@link Constants#DB_INSERT}, {@link Constants#DB_UPDATE} or {@link Constants#DB_DELETE}
+     * @return SQL text, or null if the router has no bulk operations
+     */
+    protected String getBulkQuery(String operation)
+    {
+        return null;
+    }
+
+    /**
+     * Returns the columns written by bulk creates and updates, the first one being the unique name of a row.
+     *
+     * @return column names in parameter order
+     */
+    protected List<String> getBulkColumns()
+    {
+        return List.of();
+    }
+
+    private static String validateBulkItem(String table, Object item)
+    {
+        if (!(item instanceof JsonObject jsonObject) || jsonObject.isEmpty())
+        {
+            return MESSAGE_ITEM_NOT_OBJECT;
+        }
+
+        return RequestValidator.validate(table, jsonObject);
+    }
+
+    /**
+     * Appends the bulk columns of an item to the parameter columns starting at offset.
+     * Values are bound as text and cast in SQL, so an absent optional value does not change the array type.
+     */
+    private void appendBulkColumns(JsonArray params, int offset, JsonObject item)
+    {
+        var columns = getBulkColumns();
+
+        for (var index = 0; index < columns.size(); index++)
+        {
+            var value = item.getValue(columns.get(index));
+
+            params.getJsonArray(offset + index).add(value == null
+                    ? null
+                    : value instanceof JsonObject jsonObject ? jsonObject.encode() : value.toString());
+        }
+    }
+
+    /**
+     * Runs a bulk statement for the valid items and replies with the outcome of every item.
+     *
+     * @param context       routing context of the request
+     * @param query         bulk statement
+     * @param params        parameter columns of the valid items
+     * @param indexes       request positions of the valid items, in parameter order
+     * @param results       outcome per request position, already set for rejected items
+     * @param successStatus status code replied if any item was applied
+     */
+    private void executeBulk(RoutingContext context, String query, JsonArray params, JsonArray indexes,
+                             JsonObject[] results, int successStatus)
+    {
+        var reply = indexes.isEmpty()
+                ? Future.succeededFuture(new JsonObject().put(Constants.DATA, new JsonArray()))
+                : DATABASE_SERVICE.executeColumnarQuery(new JsonObject()
+                        .put(Constants.QUERY, query)
+                        .put(Constants.PARAMS, params));
+
+        reply.onSuccess(result ->
+                {
+                    var rows = result.getJsonArray(Constants.DATA, new JsonArray());
+
+                    var applied = 0;
+
+                    for (var index = 0; index < rows.size(); index++)
+                    {
+                        var row = rows.getJsonObject(index);
+
+                        var position = indexes.getInteger(row.getInteger(ITEM) - 1);
+
+                        var error = row.getString(Constants.ERROR);
+
+                        if (error == null)
+                        {
+                            applied++;
+
+                            results[position] = new JsonObject().put(Constants.INDEX, position).put(Constants.ID, row.getInteger(Constants.ID));
+                        }
+                        else
+                        {
+                            results[position] = new JsonObject().put(Constants.INDEX, position).put(Constants.ERROR, error);
+                        }
+                    }
+
+                    context.response().setStatusCode(applied > 0 ? successStatus : Constants.SC_400)
+                            .end(new JsonObject()
+                                    .put(Constants.SUCCESS, applied == results.length)
+                                    .put(Constants.DATA, new JsonArray(Arrays.asList(results)))
+                                    .encode());
+                })
+                .onFailure(error -> dbServiceFailed(context, error.getMessage()));
+    }
+
     boolean isInvalidId(String id, RoutingContext context)
     {
         if (id == null || id.isEmpty() || Integer.parseInt(id) < 1)
@@ -228,12 +728,26 @@ public abstract class AbstractRouter implements RouterHandler
                 .end(new JsonObject().put(Constants.ERROR, errorMessage).encodePrettily());
     }
 
-    protected void setReusableObjects()
+    /**
+     * Borrows a cleared query context for one request.
+     *
+     * @return pooled context, or a new one if the pool is empty
+     */
+    protected QueryContext acquireQueryContext()
     {
-        reusableStringQuery.setLength(0);
+        var queryContext = queryContexts.poll();
 
-        reusableQueryParams.clear();
+        return queryContext == null ? new QueryContext() : queryContext;
+    }
 
-        reusableQueryObject.clear();
+    /**
+     * Returns a query context to the pool once the query built from it completed.
+     * The queue is thread safe, as database replies may complete on another event loop.
+     *
+     * @param queryContext context borrowed by {@link #acquireQueryContext()}
+     */
+    protected void releaseQueryContext(QueryContext queryContext)
+    {
+        queryContexts.offer(queryContext.reset());
     }
 }
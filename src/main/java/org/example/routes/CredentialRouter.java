@@ -2,11 +2,78 @@ package org.example.routes;
 
 import io.vertx.ext.web.Router;
 import org.example.BootStrap;
+import org.example.utils.Constants;
+
+import java.util.List;
 
 public class CredentialRouter extends AbstractRouter
 {
     private final Router router;
 
+    private static final List<String> BULK_COLUMNS = List.of("credential_profile_name", "system_type", Constants.CREDENTIALS);
+
+    private static final String BULK_INSERT_QUERY = """
+            WITH items AS (
+                SELECT * FROM unnest($1::text[], $2::text[], $3::text[])
+                WITH ORDINALITY AS t(credential_profile_name, system_type, credentials, item)
+            ),
+            inserted AS (
+                INSERT INTO credential_profiles (credential_profile_name, system_type, credentials)
+                SELECT credential_profile_name, system_type, credentials::jsonb FROM items ORDER BY item
+                ON CONFLICT (credential_profile_name) DO NOTHING
+                RETURNING id, credential_profile_name
+            )
+            SELECT i.item, n.id, CASE WHEN n.id IS NULL THEN 'Credential profile name already exists' END AS error
+            FROM items i LEFT JOIN inserted n ON n.credential_profile_name = i.credential_profile_name
+            ORDER BY i.item
+            """;
+
+    private static final String BULK_UPDATE_QUERY = """
+            WITH items AS (
+                SELECT * FROM unnest($1::int[], $2::text[], $3::text[], $4::text[])
+                WITH ORDINALITY AS t(id, credential_profile_name, system_type, credentials, item)
+            ),
+            updated AS (
+                UPDATE credential_profiles c
+                SET credential_profile_name = i.credential_profile_name, system_type = i.system_type,
+                    credentials = i.credentials::jsonb
+                FROM items i
+                WHERE c.id = i.id
+                AND NOT EXISTS (SELECT 1 FROM credential_profiles o
+                                WHERE o.credential_profile_name = i.credential_profile_name AND o.id <> i.id)
+                RETURNING c.id
+            )
+            SELECT i.item, u.id, CASE
+                       WHEN u.id IS NOT NULL THEN NULL
+                       WHEN NOT EXISTS (SELECT 1 FROM credential_profiles c WHERE c.id = i.id) THEN 'Not found'
+                       ELSE 'Credential profile name already exists'
+                   END AS error
+            FROM items i LEFT JOIN updated u ON u.id = i.id
+            ORDER BY i.item
+            """;
+
+    // Profiles still referenced by discovery profiles or devices are kept, instead of failing the whole statement
+    private static final String BULK_DELETE_QUERY = """
+            WITH items AS (
+                SELECT * FROM unnest($1::int[]) WITH ORDINALITY AS t(id, item)
+            ),
+            deleted AS (
+                DELETE FROM credential_profiles c
+                USING items i
+                WHERE c.id = i.id
+                AND NOT EXISTS (SELECT 1 FROM discovery_profiles d WHERE d.credential_profile_id = c.id)
+                AND NOT EXISTS (SELECT 1 FROM provision p WHERE p.credential_profile_id = c.id)
+                RETURNING c.id
+            )
+            SELECT i.item, d.id, CASE
+                       WHEN d.id IS NOT NULL THEN NULL
+                       WHEN EXISTS (SELECT 1 FROM credential_profiles c WHERE c.id = i.id) THEN 'Credential profile is in use'
+                       ELSE 'Not found'
+                   END AS error
+            FROM items i LEFT JOIN deleted d ON d.id = i.id
+            ORDER BY i.item
+            """;
+
     public CredentialRouter()
     {
         this.router = Router.router(BootStrap.getVertx());
@@ -19,6 +86,12 @@ public class CredentialRouter extends AbstractRouter
     {
         router.post("/createCredential").handler(this::handleCreate);
 
+        router.post("/bulk").handler(this::handleBulkCreate);
+
+        router.put("/bulk").handler(this::handleBulkUpdate);
+
+        router.delete("/bulk").handler(this::handleBulkDelete);
+
         router.get("/getCredentials").handler(this::handleGetAll);
 
         router.get("/:id").handler(this::handleGetById);
@@ -28,6 +101,27 @@ public class CredentialRouter extends AbstractRouter
         router.delete("/:id").handler(this::handleDelete);
     }
 
+    @Override
+    protected String getBulkQuery(String operation)
+    {
+        return switch (operation)
+        {
+            case Constants.DB_INSERT -> BULK_INSERT_QUERY;
+
+            case Constants.DB_UPDATE -> BULK_UPDATE_QUERY;
+
+            case Constants.DB_DELETE -> BULK_DELETE_QUERY;
+
+            default -> null;
+        };
+    }
+
+    @Override
+    protected List<String> getBulkColumns()
+    {
+        return BULK_COLUMNS;
+    }
+
     @Override
     public Router getRouter() {
         return router;
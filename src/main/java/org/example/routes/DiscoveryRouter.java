@@ -1,18 +1,105 @@
 package org.example.routes;
 
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import org.example.BootStrap;
+import org.example.cache.DiscoveryJobCache;
 import org.example.utils.Constants;
+import org.example.utils.IpRange;
+import org.example.utils.MotaDataConfigUtil;
 import org.example.utils.Utils;
 import org.example.verticles.DiscoveryEngine;
 
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class DiscoveryRouter extends AbstractRouter
 {
     private final Router router;
 
+    private static final String MESSAGE_JOB_NOT_FOUND = "Discovery job not found";
+
+    // Server-sent events framing
+    private static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream";
+
+    private static final String NO_CACHE = "no-cache";
+
+    private static final String EVENT_PREFIX = "event: ";
+
+    private static final String DATA_PREFIX = "\ndata: ";
+
+    private static final String EVENT_SUFFIX = "\n\n";
+
+    private static final List<String> BULK_COLUMNS = List.of("discovery_profile_name", Constants.CREDENTIAL_PROFILE_ID,
+            Constants.IP, Constants.PORT);
+
+    // Items referencing a missing credential profile are filtered out instead of failing the whole statement
+    private static final String BULK_INSERT_QUERY = """
+            WITH items AS (
+                SELECT * FROM unnest($1::text[], $2::text[], $3::text[], $4::text[])
+                WITH ORDINALITY AS t(discovery_profile_name, credential_profile_id, ip, port, item)
+            ),
+            inserted AS (
+                INSERT INTO discovery_profiles (discovery_profile_name, credential_profile_id, ip, port)
+                SELECT i.discovery_profile_name, i.credential_profile_id::int, i.ip, COALESCE(i.port::int, 22)
+                FROM items i JOIN credential_profiles c ON c.id = i.credential_profile_id::int
+                ORDER BY i.item
+                ON CONFLICT (discovery_profile_name) DO NOTHING
+                RETURNING id, discovery_profile_name
+            )
+            SELECT i.item, n.id, CASE
+                       WHEN n.id IS NOT NULL THEN NULL
+                       WHEN NOT EXISTS (SELECT 1 FROM credential_profiles c WHERE c.id = i.credential_profile_id::int)
+                           THEN 'Credential profile not found'
+                       ELSE 'Discovery profile name already exists'
+                   END AS error
+            FROM items i LEFT JOIN inserted n ON n.discovery_profile_name = i.discovery_profile_name
+            ORDER BY i.item
+            """;
+
+    private static final String BULK_UPDATE_QUERY = """
+            WITH items AS (
+                SELECT * FROM unnest($1::int[], $2::text[], $3::text[], $4::text[], $5::text[])
+                WITH ORDINALITY AS t(id, discovery_profile_name, credential_profile_id, ip, port, item)
+            ),
+            updated AS (
+                UPDATE discovery_profiles d
+                SET discovery_profile_name = i.discovery_profile_name, credential_profile_id = i.credential_profile_id::int,
+                    ip = i.ip, port = COALESCE(i.port::int, d.port)
+                FROM items i
+                WHERE d.id = i.id
+                AND EXISTS (SELECT 1 FROM credential_profiles c WHERE c.id = i.credential_profile_id::int)
+                AND NOT EXISTS (SELECT 1 FROM discovery_profiles o
+                                WHERE o.discovery_profile_name = i.discovery_profile_name AND o.id <> i.id)
+                RETURNING d.id
+            )
+            SELECT i.item, u.id, CASE
+                       WHEN u.id IS NOT NULL THEN NULL
+                       WHEN NOT EXISTS (SELECT 1 FROM discovery_profiles d WHERE d.id = i.id) THEN 'Not found'
+                       WHEN NOT EXISTS (SELECT 1 FROM credential_profiles c WHERE c.id = i.credential_profile_id::int)
+                           THEN 'Credential profile not found'
+                       ELSE 'Discovery profile name already exists'
+                   END AS error
+            FROM items i LEFT JOIN updated u ON u.id = i.id
+            ORDER BY i.item
+            """;
+
+    private static final String BULK_DELETE_QUERY = """
+            WITH items AS (
+                SELECT * FROM unnest($1::int[]) WITH ORDINALITY AS t(id, item)
+            ),
+            deleted AS (
+                DELETE FROM discovery_profiles d USING items i WHERE d.id = i.id RETURNING d.id
+            )
+            SELECT i.item, d.id, CASE WHEN d.id IS NULL THEN 'Not found' END AS error
+            FROM items i LEFT JOIN deleted d ON d.id = i.id
+            ORDER BY i.item
+            """;
+
     public DiscoveryRouter()
     {
         this.router = Router.router(BootStrap.getVertx());
@@ -27,6 +114,16 @@ public class DiscoveryRouter extends AbstractRouter
 
         router.post("/run").handler(this::handleDiscovery);
 
+        router.get("/jobs/:id").handler(this::handleGetJob);
+
+        router.get("/jobs/:id/events").handler(this::handleJobEvents);
+
+        router.post("/bulk").handler(this::handleBulkCreate);
+
+        router.put("/bulk").handler(this::handleBulkUpdate);
+
+        router.delete("/bulk").handler(this::handleBulkDelete);
+
         router.get("/getDiscoveryProfiles").handler(this::handleGetAll);
 
         router.get("/:id").handler(this::handleGetById);
@@ -45,24 +142,41 @@ public class DiscoveryRouter extends AbstractRouter
             {
                 if (isInvalidBody(body.toJsonObject(), context)) return;
 
-                setReusableObjects();
+                var queryContext = acquireQueryContext();
 
-                reusableQueryObject.put(Constants.OPERATION, Constants.DB_INSERT)
+                queryContext.input().put(Constants.OPERATION, Constants.DB_INSERT)
                         .put(Constants.TABLE_NAME, Utils.getTableNameFromContext(context))
                         .put(Constants.DATA, body.toJsonObject());
 
                 DATABASE_SERVICE
-                        .executeQuery(Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams))
+                        .executeQuery(queryContext.build())
+                        .onComplete(asyncResult -> releaseQueryContext(queryContext))
                         .onSuccess(reply ->
 
-                                DATABASE_SERVICE.executeQuery(new JsonObject()
-                                        .put(Constants.QUERY,  Utils.buildJoinQuery(Constants.FETCH_DISCOVERY_PROFILES_QUERY,reply.getJsonArray(Constants.DATA).size()))
-                                        .put(Constants.PARAMS, new JsonArray().add(reply.getJsonArray(Constants.DATA)
-                                                .getJsonObject(0).getInteger(Constants.ID))))
+                                DATABASE_SERVICE.executeColumnarQuery(new JsonObject()
+                                        .put(Constants.QUERY, Constants.FETCH_DISCOVERY_PROFILES_QUERY)
+                                        .put(Constants.PARAMS, new JsonArray().add(new JsonArray().add(reply.getJsonArray(Constants.DATA)
+                                                .getJsonObject(0).getInteger(Constants.ID)))))
                                         .onSuccess(databaseReply ->
+                                        {
+                                            var devicesData = databaseReply.getJsonArray(Constants.DATA);
+
+                                            // A range sweep outlasts the request timeout, so it is run as a job
+                                            if (IpRange.isRange(devicesData.getJsonObject(0).getString(Constants.IP)))
+                                            {
+                                                var jobId = startJob(context, devicesData, countTargets(devicesData),
+                                                        Constants.FALSE);
+
+                                                context.response().setStatusCode(Constants.SC_202).end(new JsonObject()
+                                                        .put(Constants.SUCCESS, Constants.TRUE)
+                                                        .put(Constants.ID, devicesData.getJsonObject(0).getInteger(Constants.ID))
+                                                        .put(Constants.JOB_ID, jobId).encode());
+
+                                                return;
+                                            }
 
                                             context.vertx().eventBus().<JsonArray>request(Constants.DISCOVERY_ADDRESS,
-                                                    databaseReply.getJsonArray(Constants.DATA), asyncResult ->
+                                                    devicesData, asyncResult ->
                                                     {
                                                         if (asyncResult.succeeded())
                                                         {
@@ -74,8 +188,8 @@ public class DiscoveryRouter extends AbstractRouter
                                                             context.response().setStatusCode(Constants.SC_500)
                                                                     .end(asyncResult.cause().getMessage());
                                                         }
-                                                    })
-                                        ).onFailure(error -> dbServiceFailed(context, error.getMessage())))
+                                                    });
+                                        }).onFailure(error -> dbServiceFailed(context, error.getMessage())))
                         .onFailure(error -> dbServiceFailed(context, error.getMessage()));
             }
             catch (Exception exception)
@@ -87,6 +201,11 @@ public class DiscoveryRouter extends AbstractRouter
         });
     }
 
+    /**
+     * Starts discovery of the profiles in the ids array of the body as a job and replies 202 with the job ID at once.
+     * Progress is read from /jobs/:id or streamed from /jobs/:id/events.
+     * Targets verified recently with the same credentials reuse their cached result, unless force is set in the body.
+     */
     void handleDiscovery(RoutingContext context)
     {
         context.request().bodyHandler(body ->
@@ -99,16 +218,19 @@ public class DiscoveryRouter extends AbstractRouter
                 }
                 else
                 {
-                    setReusableObjects();
-
                     var deviceIDs = body.toJsonObject().getJsonArray(Constants.IDS);
 
-                    DATABASE_SERVICE.executeQuery(new JsonObject()
-                                    .put(Constants.QUERY, Utils.buildJoinQuery(Constants.FETCH_DISCOVERY_PROFILES_QUERY,deviceIDs.size()))
-                                    .put(Constants.PARAMS,deviceIDs))
+                    var force = body.toJsonObject().getBoolean(Constants.FORCE, Constants.FALSE);
+
+                    // IDs are bound as a single int[] parameter
+                    DATABASE_SERVICE.executeColumnarQuery(new JsonObject()
+                                    .put(Constants.QUERY, Constants.FETCH_DISCOVERY_PROFILES_QUERY)
+                                    .put(Constants.PARAMS, new JsonArray().add(deviceIDs)))
                                     .onSuccess(response->
                                     {
-                                        if (response.getJsonArray(Constants.DATA).isEmpty())
+                                        var devicesData = response.getJsonArray(Constants.DATA);
+
+                                        if (devicesData.isEmpty())
                                         {
                                             LOGGER.error("No discovery profiles found for IDs: {}", deviceIDs);
 
@@ -118,19 +240,16 @@ public class DiscoveryRouter extends AbstractRouter
                                         }
                                         else
                                         {
-                                            context.vertx().eventBus().<JsonArray>request(Constants.DISCOVERY_ADDRESS,response.getJsonArray(Constants.DATA), asyncResult ->
-                                            {
-                                                if (asyncResult.succeeded())
-                                                {
-                                                    context.response()
-                                                            .setStatusCode(Constants.SC_200)
-                                                            .end(asyncResult.result().body().encode());
-                                                }
-                                                else
-                                                {
-                                                    context.response().setStatusCode(Constants.SC_500).end(asyncResult.cause().getMessage());
-                                                }
-                                            });
+                                            var total = countTargets(devicesData);
+
+                                            var jobId = startJob(context, devicesData, total, force);
+
+                                            context.response()
+                                                    .setStatusCode(Constants.SC_202)
+                                                    .end(new JsonObject()
+                                                            .put(Constants.SUCCESS, Constants.TRUE)
+                                                            .put(Constants.JOB_ID, jobId)
+                                                            .put(Constants.TOTAL, total).encode());
                                         }
                                     })
                                     .onFailure(error -> dbServiceFailed(context, error.getMessage()));
@@ -145,6 +264,182 @@ public class DiscoveryRouter extends AbstractRouter
         });
     }
 
+    /**
+     * Registers a discovery job for the devices and hands it to the discovery engine.
+     *
+     * @param total number of devices and range addresses to process
+     * @param force whether cached discovery results are bypassed
+     * @return ID of the job
+     */
+    private static String startJob(RoutingContext context, JsonArray devicesData, long total, boolean force)
+    {
+        var jobId = DiscoveryJobCache.createJob(total);
+
+        context.vertx().eventBus().send(Constants.DISCOVERY_JOB_ADDRESS, new JsonObject()
+                .put(Constants.JOB_ID, jobId)
+                .put(Constants.DATA, devicesData)
+                .put(Constants.FORCE, force));
+
+        return jobId;
+    }
+
+    /**
+     * Counts the addresses a job will process, each address of a range profile being reported as processed once swept.
+     * A malformed range or one over the sweep limit is rejected by the engine as a single target.
+     */
+    private static long countTargets(JsonArray devicesData)
+    {
+        var maxAddresses = MotaDataConfigUtil.getConfig().getLong(Constants.DISCOVERY_SWEEP_MAX_ADDRESSES,
+                Constants.DEFAULT_DISCOVERY_SWEEP_MAX_ADDRESSES);
+
+        var total = 0L;
+
+        for (var index = 0; index < devicesData.size(); index++)
+        {
+            var target = devicesData.getJsonObject(index).getString(Constants.IP);
+
+            try
+            {
+                total += IpRange.isRange(target) ? IpRange.parse(target, maxAddresses).size() : 1;
+            }
+            catch (IllegalArgumentException exception)
+            {
+                total++;
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Returns the status, progress and per device results of a discovery job.
+     */
+    void handleGetJob(RoutingContext context)
+    {
+        var job = DiscoveryJobCache.getJob(context.pathParam(Constants.ID));
+
+        if (job == null)
+        {
+            context.response().setStatusCode(Constants.SC_404).end(new JsonObject()
+                    .put(Constants.SUCCESS, Constants.FALSE)
+                    .put(Constants.ERROR, MESSAGE_JOB_NOT_FOUND).encode());
+
+            return;
+        }
+
+        context.response().setStatusCode(Constants.SC_200).end(job.put(Constants.SUCCESS, Constants.TRUE).encode());
+    }
+
+    /**
+     * Streams a discovery job as server-sent events, one "result" event per device followed by a final event
+     * named after the job status. Results gathered before the client subscribed are sent first.
+     */
+    void handleJobEvents(RoutingContext context)
+    {
+        var jobId = context.pathParam(Constants.ID);
+
+        if (DiscoveryJobCache.getJob(jobId) == null)
+        {
+            context.response().setStatusCode(Constants.SC_404).end(new JsonObject()
+                    .put(Constants.SUCCESS, Constants.FALSE)
+                    .put(Constants.ERROR, MESSAGE_JOB_NOT_FOUND).encode());
+
+            return;
+        }
+
+        var response = context.response()
+                .setChunked(Constants.TRUE)
+                .putHeader(HttpHeaders.CONTENT_TYPE, EVENT_STREAM_CONTENT_TYPE)
+                .putHeader(HttpHeaders.CACHE_CONTROL, NO_CACHE);
+
+        // Results below this index were already sent from the snapshot
+        var sent = new AtomicInteger();
+
+        var consumer = context.vertx().eventBus().<JsonObject>localConsumer(Constants.DISCOVERY_JOB_EVENTS_ADDRESS + jobId);
+
+        // Events are dispatched after this handler returns, so none is lost between subscribing and the snapshot
+        consumer.handler(message ->
+        {
+            var event = message.body();
+
+            if (response.ended())
+            {
+                return;
+            }
+
+            if (Constants.RESULT.equals(event.getString(Constants.EVENT)))
+            {
+                if (event.getInteger(Constants.INDEX) >= sent.get())
+                {
+                    writeEvent(response, Constants.RESULT, event.getJsonObject(Constants.DATA));
+                }
+            }
+            else
+            {
+                writeEvent(response, event.getString(Constants.EVENT), event.getJsonObject(Constants.DATA));
+
+                consumer.unregister();
+
+                response.end();
+            }
+        });
+
+        response.closeHandler(closed -> consumer.unregister());
+
+        var job = DiscoveryJobCache.getJob(jobId);
+
+        var results = job == null ? new JsonArray() : (JsonArray) job.remove(Constants.RESULTS);
+
+        for (var index = 0; index < results.size(); index++)
+        {
+            writeEvent(response, Constants.RESULT, results.getJsonObject(index));
+        }
+
+        sent.set(results.size());
+
+        // The job finished before the subscription, its final event was already published
+        if (job == null || !Constants.JOB_RUNNING.equals(job.getString(Constants.STATUS)))
+        {
+            if (job != null)
+            {
+                writeEvent(response, job.getString(Constants.STATUS), job);
+            }
+
+            consumer.unregister();
+
+            response.end();
+        }
+    }
+
+    private static void writeEvent(HttpServerResponse response, String event, JsonObject data)
+    {
+        response.write(EVENT_PREFIX + event + DATA_PREFIX + data.encode() + EVENT_SUFFIX);
+    }
+
+    /**
+     * Bulk created profiles are not discovered inline like single ones, imports run discovery through /run.
+     */
+    @Override
+    protected String getBulkQuery(String operation)
+    {
+        return switch (operation)
+        {
+            case Constants.DB_INSERT -> BULK_INSERT_QUERY;
+
+            case Constants.DB_UPDATE -> BULK_UPDATE_QUERY;
+
+            case Constants.DB_DELETE -> BULK_DELETE_QUERY;
+
+            default -> null;
+        };
+    }
+
+    @Override
+    protected List<String> getBulkColumns()
+    {
+        return BULK_COLUMNS;
+    }
+
     @Override
     public Router getRouter()
     {
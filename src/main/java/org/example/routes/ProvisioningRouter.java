@@ -1,14 +1,22 @@
 
 package org.example.routes;
 
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import org.example.BootStrap;
 import org.example.cache.AvailabilityCacheEngine;
+import org.example.cache.MetricsCacheEngine;
 import org.example.utils.Constants;
+import org.example.utils.MotaDataConfigUtil;
 import org.example.utils.Utils;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
 public class ProvisioningRouter extends AbstractRouter
 {
     private final Router router;
@@ -19,6 +27,261 @@ public class ProvisioningRouter extends AbstractRouter
 
     private static final String MESSAGE_DEVICE_IS_ALREADY_PROVISIONING = "Device is already provisioning";
 
+    private static final String MESSAGE_IP_CONFLICT = "Device ip is already provisioned with another credential profile";
+
+    private static final String MESSAGE_NO_CURRENT_METRICS = "No metrics polled yet for device";
+
+    private static final String MESSAGE_IDS_REQUIRED = "ids must be a non empty array of device IDs";
+
+    private static final String MESSAGE_INVALID_TIME_RANGE = "Invalid time range, from and to must be ISO-8601 instants with from before to";
+
+    private static final String MESSAGE_INVALID_BUCKET = "bucket must be a positive number of seconds, at most %d buckets per range";
+
+    private static final String MESSAGE_INVALID_METRICS = "metrics must be an array of metric names";
+
+    // Provisioning outcomes per discovery profile
+    private static final String OUTCOME = "outcome";
+
+    private static final String OUTCOME_CREATED = "CREATED";
+
+    private static final String OUTCOME_REACTIVATED = "REACTIVATED";
+
+    private static final String OUTCOME_ALREADY_PROVISIONED = "ALREADY_PROVISIONED";
+
+    private static final String OUTCOME_NOT_DISCOVERED = "NOT_DISCOVERED";
+
+    private static final String OUTCOME_IP_CONFLICT = "IP_CONFLICT";
+
+    private static final long SECONDS_PER_HOUR = 3600;
+
+    private static final long SECONDS_PER_DAY = 86400;
+
+    // History resolutions
+    private static final String RESOLUTION_RAW = "raw";
+
+    private static final String RESOLUTION_HOURLY = "hourly";
+
+    private static final String RESOLUTION_DAILY = "daily";
+
+    // Config keys
+    private static final String HISTORY_RAW_MAX_RANGE = "history.raw.max.range.in.hours";
+
+    private static final String HISTORY_HOURLY_MAX_RANGE = "history.hourly.max.range.in.days";
+
+    private static final String METRICS_QUERY_MAX_BUCKETS = "metrics.query.max.buckets";
+
+    // Defaults
+    private static final Duration DEFAULT_HISTORY_RANGE = Duration.ofHours(24);
+
+    private static final int DEFAULT_HISTORY_RAW_MAX_RANGE = 48;
+
+    private static final int DEFAULT_HISTORY_HOURLY_MAX_RANGE = 90;
+
+    private static final int DEFAULT_METRICS_QUERY_MAX_BUCKETS = 1000;
+
+    private static final String FETCH_RAW_HISTORY_QUERY = """
+            SELECT s.polled_at AS bucket, d.name AS metric, s.value AS min, s.value AS max, s.value AS avg, s.value AS last, 1 AS samples
+            FROM metric_samples s JOIN metric_dictionary d ON d.id = s.metric_id
+            WHERE s.provision_id = $1 AND s.polled_at >= $2::timestamptz AND s.polled_at < $3::timestamptz
+            AND ($4::text IS NULL OR d.name = $4::text)
+            ORDER BY metric, bucket
+            """;
+
+    /*
+     * Rollup history, bounded like the rollup metric queries: $5 and $6 bound the buckets lying wholly inside the range,
+     * the partial buckets at both ends and the samples past the rollup watermark are aggregated from metric_samples.
+     */
+    private static final String FETCH_HOURLY_HISTORY_QUERY = """
+            WITH points AS (
+                SELECT metric, bucket AS at, min_value, max_value, sum_value, samples, last_value, last_at
+                FROM metric_rollups_hourly
+                WHERE provision_id = $1 AND ($4::text IS NULL OR metric = $4::text)
+                AND bucket >= $5::timestamptz AND bucket < $6::timestamptz
+                UNION ALL
+                SELECT d.name, s.polled_at, s.value, s.value, s.value, 1, s.value, s.polled_at
+                FROM metric_samples s JOIN metric_dictionary d ON d.id = s.metric_id
+                WHERE s.provision_id = $1 AND ($4::text IS NULL OR d.name = $4::text)
+                AND s.polled_at >= $2::timestamptz AND s.polled_at < $3::timestamptz
+                AND (s.polled_at < $5::timestamptz OR s.polled_at >= $6::timestamptz)
+                UNION ALL
+                SELECT d.name, s.polled_at, s.value, s.value, s.value, 1, s.value, s.polled_at
+                FROM metric_samples s JOIN metric_dictionary d ON d.id = s.metric_id
+                WHERE s.provision_id = $1 AND ($4::text IS NULL OR d.name = $4::text)
+                AND s.polled_at >= $5::timestamptz AND s.polled_at < $6::timestamptz
+                AND s.id > (SELECT last_id FROM rollup_watermarks WHERE name = 'metric_samples')
+            )
+            SELECT date_trunc('hour', at, 'UTC') AS bucket, metric, min(min_value) AS min, max(max_value) AS max,
+                   sum(sum_value) / sum(samples) AS avg, (array_agg(last_value ORDER BY last_at DESC))[1] AS last,
+                   sum(samples)::bigint AS samples
+            FROM points
+            GROUP BY 1, 2
+            ORDER BY metric, bucket
+            """;
+
+    private static final String FETCH_DAILY_HISTORY_QUERY = """
+            WITH points AS (
+                SELECT metric, bucket AS at, min_value, max_value, sum_value, samples, last_value, last_at
+                FROM metric_rollups_daily
+                WHERE provision_id = $1 AND ($4::text IS NULL OR metric = $4::text)
+                AND bucket >= $5::timestamptz AND bucket < $6::timestamptz
+                UNION ALL
+                SELECT d.name, s.polled_at, s.value, s.value, s.value, 1, s.value, s.polled_at
+                FROM metric_samples s JOIN metric_dictionary d ON d.id = s.metric_id
+                WHERE s.provision_id = $1 AND ($4::text IS NULL OR d.name = $4::text)
+                AND s.polled_at >= $2::timestamptz AND s.polled_at < $3::timestamptz
+                AND (s.polled_at < $5::timestamptz OR s.polled_at >= $6::timestamptz)
+                UNION ALL
+                SELECT d.name, s.polled_at, s.value, s.value, s.value, 1, s.value, s.polled_at
+                FROM metric_samples s JOIN metric_dictionary d ON d.id = s.metric_id
+                WHERE s.provision_id = $1 AND ($4::text IS NULL OR d.name = $4::text)
+                AND s.polled_at >= $5::timestamptz AND s.polled_at < $6::timestamptz
+                AND s.id > (SELECT last_id FROM rollup_watermarks WHERE name = 'metric_samples')
+            )
+            SELECT date_trunc('day', at, 'UTC') AS bucket, metric, min(min_value) AS min, max(max_value) AS max,
+                   sum(sum_value) / sum(samples) AS avg, (array_agg(last_value ORDER BY last_at DESC))[1] AS last,
+                   sum(samples)::bigint AS samples
+            FROM points
+            GROUP BY 1, 2
+            ORDER BY metric, bucket
+            """;
+
+    /*
+     * Provisions the discovered profiles of $1 in one statement. A device matches an existing provision row on
+     * ip and credential profile, as the per profile flow did. A new device is inserted, a stopped matching one is
+     * reactivated, an active one is left untouched and a row holding the ip under another credential profile is
+     * never overwritten but reported as IP_CONFLICT. When several requested profiles share an ip, the lowest profile ID
+     * is chosen and the others are reported as DUPLICATE.
+     * Every requested ID gets one row with its outcome. CTEs share one snapshot, so provision e is the state before
+     * the upsert: an upserted row without e is an insert, with e a reactivation.
+     * A range profile is provisioned through the discovered addresses of discovery_results, one row per address,
+     * the range itself never counts as discovered.
+     */
+    private static final String PROVISION_DEVICES_QUERY = """
+            WITH requested AS (
+                SELECT DISTINCT unnest($1::int[]) AS discovery_profile_id
+            ),
+            profiles AS (
+                SELECT r.discovery_profile_id, COALESCE(dr.ip, dp.ip) AS ip, dp.port, dp.credential_profile_id,
+                       COALESCE(dr.status, dp.status AND dp.ip !~ '[/-]') AS discovered
+                FROM requested r
+                LEFT JOIN discovery_profiles dp ON dp.id = r.discovery_profile_id
+                LEFT JOIN discovery_results dr ON dr.discovery_profile_id = dp.id AND dr.status
+            ),
+            chosen AS (
+                SELECT DISTINCT ON (ip) discovery_profile_id, ip, port, credential_profile_id
+                FROM profiles
+                WHERE discovered
+                ORDER BY ip, discovery_profile_id
+            ),
+            upserted AS (
+                INSERT INTO provision (ip, port, credential_profile_id, status)
+                SELECT ip, port, credential_profile_id, TRUE
+                FROM chosen
+                ON CONFLICT (ip) DO UPDATE
+                SET status = TRUE
+                WHERE provision.status IS NOT TRUE AND provision.credential_profile_id = EXCLUDED.credential_profile_id
+                RETURNING id, ip
+            )
+            SELECT p.discovery_profile_id AS id, p.ip, COALESCE(u.id, e.id) AS provision_id, e.status AS prior_status,
+                   CASE
+                       WHEN p.ip IS NULL THEN 'NOT_FOUND'
+                       WHEN p.discovered IS NOT TRUE THEN 'NOT_DISCOVERED'
+                       WHEN c.ip IS NULL THEN 'DUPLICATE'
+                       WHEN e.id IS NOT NULL AND e.credential_profile_id IS DISTINCT FROM p.credential_profile_id THEN 'IP_CONFLICT'
+                       WHEN u.id IS NULL THEN 'ALREADY_PROVISIONED'
+                       WHEN e.id IS NULL THEN 'CREATED'
+                       ELSE 'REACTIVATED'
+                   END AS outcome
+            FROM profiles p
+            LEFT JOIN chosen c ON c.ip = p.ip AND c.discovery_profile_id = p.discovery_profile_id
+            LEFT JOIN upserted u ON u.ip = c.ip
+            LEFT JOIN provision e ON e.ip = p.ip
+            ORDER BY p.discovery_profile_id, p.ip
+            """;
+
+    // Bucketed aggregates, $1 device IDs, $2 metric names or null for all, $3 from, $4 to, $5 bucket width in seconds
+    private static final String QUERY_RAW_METRICS_QUERY = """
+            SELECT s.provision_id AS id, d.name AS metric,
+                   date_bin($5::bigint * interval '1 second', s.polled_at, $3::timestamptz) AS bucket,
+                   avg(s.value) AS avg, min(s.value) AS min, max(s.value) AS max,
+                   percentile_cont(0.95) WITHIN GROUP (ORDER BY s.value) AS p95, count(*) AS samples
+            FROM metric_samples s JOIN metric_dictionary d ON d.id = s.metric_id
+            WHERE s.provision_id = ANY($1::int[]) AND ($2::text[] IS NULL OR d.name = ANY($2::text[]))
+            AND s.polled_at >= $3::timestamptz AND s.polled_at < $4::timestamptz
+            GROUP BY 1, 2, 3
+            ORDER BY 1, 2, 3
+            """;
+
+    /*
+     * Rollups hold no distribution, so p95 is null. $6 and $7 bound the rollup buckets lying wholly inside the range,
+     * the partial buckets at both ends are aggregated from the metric samples from $3 and up to $4. Samples past the
+     * rollup watermark are not in the rollups yet and are added from metric_samples, so recent buckets are complete.
+     */
+    private static final String QUERY_HOURLY_METRICS_QUERY = """
+            WITH points AS (
+                SELECT provision_id, metric, bucket AS at, min_value, max_value, sum_value, samples
+                FROM metric_rollups_hourly
+                WHERE provision_id = ANY($1::int[]) AND ($2::text[] IS NULL OR metric = ANY($2::text[]))
+                AND bucket >= $6::timestamptz AND bucket < $7::timestamptz
+                UNION ALL
+                SELECT s.provision_id, d.name, s.polled_at, s.value, s.value, s.value, 1
+                FROM metric_samples s JOIN metric_dictionary d ON d.id = s.metric_id
+                WHERE s.provision_id = ANY($1::int[]) AND ($2::text[] IS NULL OR d.name = ANY($2::text[]))
+                AND s.polled_at >= $3::timestamptz AND s.polled_at < $4::timestamptz
+                AND (s.polled_at < $6::timestamptz OR s.polled_at >= $7::timestamptz)
+                UNION ALL
+                SELECT s.provision_id, d.name, s.polled_at, s.value, s.value, s.value, 1
+                FROM metric_samples s JOIN metric_dictionary d ON d.id = s.metric_id
+                WHERE s.provision_id = ANY($1::int[]) AND ($2::text[] IS NULL OR d.name = ANY($2::text[]))
+                AND s.polled_at >= $6::timestamptz AND s.polled_at < $7::timestamptz
+                AND s.id > (SELECT last_id FROM rollup_watermarks WHERE name = 'metric_samples')
+            )
+            SELECT provision_id AS id, metric,
+                   date_bin($5::bigint * interval '1 second', at, date_trunc('hour', $3::timestamptz, 'UTC')) AS bucket,
+                   sum(sum_value) / sum(samples) AS avg, min(min_value) AS min, max(max_value) AS max,
+                   NULL::float8 AS p95, sum(samples)::bigint AS samples
+            FROM points
+            GROUP BY 1, 2, 3
+            ORDER BY 1, 2, 3
+            """;
+
+    private static final String QUERY_DAILY_METRICS_QUERY = """
+            WITH points AS (
+                SELECT provision_id, metric, bucket AS at, min_value, max_value, sum_value, samples
+                FROM metric_rollups_daily
+                WHERE provision_id = ANY($1::int[]) AND ($2::text[] IS NULL OR metric = ANY($2::text[]))
+                AND bucket >= $6::timestamptz AND bucket < $7::timestamptz
+                UNION ALL
+                SELECT s.provision_id, d.name, s.polled_at, s.value, s.value, s.value, 1
+                FROM metric_samples s JOIN metric_dictionary d ON d.id = s.metric_id
+                WHERE s.provision_id = ANY($1::int[]) AND ($2::text[] IS NULL OR d.name = ANY($2::text[]))
+                AND s.polled_at >= $3::timestamptz AND s.polled_at < $4::timestamptz
+                AND (s.polled_at < $6::timestamptz OR s.polled_at >= $7::timestamptz)
+                UNION ALL
+                SELECT s.provision_id, d.name, s.polled_at, s.value, s.value, s.value, 1
+                FROM metric_samples s JOIN metric_dictionary d ON d.id = s.metric_id
+                WHERE s.provision_id = ANY($1::int[]) AND ($2::text[] IS NULL OR d.name = ANY($2::text[]))
+                AND s.polled_at >= $6::timestamptz AND s.polled_at < $7::timestamptz
+                AND s.id > (SELECT last_id FROM rollup_watermarks WHERE name = 'metric_samples')
+            )
+            SELECT provision_id AS id, metric,
+                   date_bin($5::bigint * interval '1 second', at, date_trunc('day', $3::timestamptz, 'UTC')) AS bucket,
+                   sum(sum_value) / sum(samples) AS avg, min(min_value) AS min, max(max_value) AS max,
+                   NULL::float8 AS p95, sum(samples)::bigint AS samples
+            FROM points
+            GROUP BY 1, 2, 3
+            ORDER BY 1, 2, 3
+            """;
+
+    private final Duration rawMaxRange = Duration.ofHours(MotaDataConfigUtil.getConfig()
+            .getInteger(HISTORY_RAW_MAX_RANGE, DEFAULT_HISTORY_RAW_MAX_RANGE));
+
+    private final Duration hourlyMaxRange = Duration.ofDays(MotaDataConfigUtil.getConfig()
+            .getInteger(HISTORY_HOURLY_MAX_RANGE, DEFAULT_HISTORY_HOURLY_MAX_RANGE));
+
+    private final int metricsQueryMaxBuckets = MotaDataConfigUtil.getConfig()
+            .getInteger(METRICS_QUERY_MAX_BUCKETS, DEFAULT_METRICS_QUERY_MAX_BUCKETS);
+
     public ProvisioningRouter()
     {
         this.router = Router.router(BootStrap.getVertx());
@@ -29,135 +292,98 @@ public class ProvisioningRouter extends AbstractRouter
     @Override
     public void initRoutes()
     {
+        router.post("/startProvision").handler(this::handleBulkProvision);
+
         router.post("/startProvision/:id").handler(this::handleStartProvision);
 
         router.get("/getAll").handler(this::handleGetAll);
 
+        router.post("/current").handler(this::handleGetCurrentBatch);
+
+        router.post("/metrics").handler(this::handleQueryMetrics);
+
+        router.get("/:id/current").handler(this::handleGetCurrent);
+
+        router.get("/:id/history").handler(this::handleGetHistory);
+
         router.get("/:id").handler(this::handleGetById);
 
         router.delete("/:id").handler(this::handleDelete);
     }
 
-    //todo:- simplify logic of provision
+    /**
+     * Provisions one discovery profile with the same single statement as the bulk endpoint,
+     * so the profile lookup, the existing device check and the insert or reactivation are one round trip.
+     * A range profile provisions all its discovered addresses and replies the per address rows.
+     */
     void handleStartProvision(RoutingContext context)
     {
-        var id = context.pathParam(Constants.ID);
-
         try
         {
             if(isInvalidId(context.pathParam(Constants.ID),context)) return;
 
-            setReusableObjects();
-
-            reusableQueryObject.put(Constants.OPERATION, Constants.DB_SELECT)
-                    .put(Constants.TABLE_NAME, Constants.DISCOVERY_PROFILES_TABLE)
-                    .put(Constants.CONDITIONS , new JsonObject().put(Constants.ID, Integer.parseInt(id)));
-
             DATABASE_SERVICE
-                    .executeQuery(Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams))
-                    .onSuccess(result ->
+                    .executeColumnarQuery(new JsonObject()
+                            .put(Constants.QUERY, PROVISION_DEVICES_QUERY)
+                            .put(Constants.PARAMS, new JsonArray()
+                                    .add(new JsonArray().add(Integer.parseInt(context.pathParam(Constants.ID))))))
+                    .onSuccess(reply ->
                     {
-                        if (!Boolean.TRUE.equals(result.getBoolean(Constants.SUCCESS)))
+                        var rows = reply.getJsonArray(Constants.DATA, new JsonArray());
+
+                        markProvisioned(rows);
+
+                        if (rows.size() > 1)
                         {
-                            context.response()
-                                    .setStatusCode(Constants.SC_500)
-                                    .end(new JsonObject().put(Constants.ERROR, result.getString(Constants.ERROR)).encodePrettily());
+                            var provisioned = rows.stream().map(JsonObject.class::cast)
+                                    .anyMatch(row -> OUTCOME_CREATED.equals(row.getString(OUTCOME))
+                                            || OUTCOME_REACTIVATED.equals(row.getString(OUTCOME)));
+
+                            context.response().setStatusCode(provisioned ? Constants.SC_201 : Constants.SC_400)
+                                    .end(new JsonObject()
+                                            .put(Constants.SUCCESS, provisioned)
+                                            .put(Constants.DATA, rows).encode());
 
                             return;
                         }
 
-                        var response = result.getJsonArray(Constants.DATA);
+                        var row = rows.getJsonObject(0);
+
+                        var provisionId = row.getInteger(Constants.PROVISION_ID);
 
-                        if (response == null || response.isEmpty())
+                        switch (row.getString(OUTCOME))
                         {
-                            context.response()
-                                    .setStatusCode(Constants.SC_404)
+                            case OUTCOME_CREATED -> context.response().setStatusCode(Constants.SC_201)
                                     .end(new JsonObject()
-                                            .put(Constants.SUCCESS, Constants.FALSE)
-                                            .put(Constants.ERROR,MESSAGE_DISCOVERY_PROFILE_NOT_FOUND).encodePrettily());
+                                            .put(Constants.SUCCESS, Constants.TRUE)
+                                            .put(Constants.DATA, new JsonArray().add(new JsonObject().put(Constants.ID, provisionId)))
+                                            .encode());
 
-                            return;
-                        }
+                            case OUTCOME_REACTIVATED -> context.response().setStatusCode(Constants.SC_201)
+                                    .end(new JsonObject()
+                                            .put(Constants.SUCCESS, Constants.TRUE)
+                                            .put(Constants.ID, provisionId).encode());
 
-                        var discoveryProfile = response.getJsonObject(0);
+                            case OUTCOME_ALREADY_PROVISIONED -> context.response().setStatusCode(Constants.SC_400)
+                                    .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                            .put(Constants.ERROR, MESSAGE_DEVICE_IS_ALREADY_PROVISIONING)
+                                            .encodePrettily());
 
-                        if (!Boolean.TRUE.equals(discoveryProfile.getBoolean(Constants.STATUS)))
-                        {
-                            context.response()
-                                    .setStatusCode(Constants.SC_404)
+                            case OUTCOME_IP_CONFLICT -> context.response().setStatusCode(Constants.SC_400)
+                                    .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                            .put(Constants.ERROR, MESSAGE_IP_CONFLICT)
+                                            .encodePrettily());
+
+                            case OUTCOME_NOT_DISCOVERED -> context.response().setStatusCode(Constants.SC_404)
                                     .end(new JsonObject()
                                             .put(Constants.SUCCESS, Constants.FALSE)
                                             .put(Constants.ERROR, MESSAGE_DEVICE_NOT_DISCOVERED).encodePrettily());
 
-                            return;
+                            default -> context.response().setStatusCode(Constants.SC_404)
+                                    .end(new JsonObject()
+                                            .put(Constants.SUCCESS, Constants.FALSE)
+                                            .put(Constants.ERROR, MESSAGE_DISCOVERY_PROFILE_NOT_FOUND).encodePrettily());
                         }
-
-                        setReusableObjects();
-
-                        reusableQueryObject.put(Constants.OPERATION, Constants.DB_SELECT)
-                                .put(Constants.TABLE_NAME, Constants.PROVISION_TABLE)
-                                .put(Constants.CONDITIONS , new JsonObject()
-                                        .put(Constants.IP, discoveryProfile.getString(Constants.IP))
-                                        .put(Constants.CREDENTIAL_PROFILE_ID
-                                                ,discoveryProfile.getInteger(Constants.CREDENTIAL_PROFILE_ID)));
-
-                        DATABASE_SERVICE.executeQuery(Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams))
-                                .onSuccess(asyncResult ->
-                                {
-                                    var databaseResponse = asyncResult.getJsonArray(Constants.DATA);
-
-                                    setReusableObjects();
-
-                                    if(databaseResponse.isEmpty())
-                                    {
-                                        reusableQueryObject.put(Constants.OPERATION, Constants.DB_INSERT)
-                                                .put(Constants.TABLE_NAME, Constants.PROVISION_TABLE)
-                                                .put(Constants.DATA, new JsonObject()
-                                                        .put(Constants.IP, discoveryProfile.getString(Constants.IP))
-                                                        .put(Constants.PORT, discoveryProfile.getInteger(Constants.PORT))
-                                                        .put(Constants.CREDENTIAL_PROFILE_ID, discoveryProfile.getInteger(Constants.CREDENTIAL_PROFILE_ID)));
-
-                                        DATABASE_SERVICE
-                                                .executeQuery(Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams))
-                                                .onSuccess(dbReply ->
-                                                {
-                                                    AvailabilityCacheEngine.setDeviceStatus(dbReply.getJsonArray(Constants.DATA).getJsonObject(0).getInteger(Constants.ID), Constants.UP);
-
-                                                    context.response().setStatusCode(Constants.SC_201).end(dbReply.encode());
-                                                })
-                                                .onFailure(error -> dbServiceFailed(context, error.getMessage()));
-                                    }
-                                    else if(!Boolean.TRUE.equals(databaseResponse.getJsonObject(0).getBoolean(Constants.STATUS)))
-                                    {
-                                        reusableQueryObject.put(Constants.OPERATION, Constants.DB_UPDATE)
-                                                .put(Constants.CONDITIONS ,new JsonObject().put(Constants.ID,databaseResponse.getJsonObject(0).getInteger(Constants.ID)))
-                                                .put(Constants.TABLE_NAME,Constants.PROVISION_TABLE)
-                                                .put(Constants.DATA, new JsonObject().put(Constants.STATUS,Constants.TRUE));
-
-                                        DATABASE_SERVICE
-                                                .executeQuery(Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams))
-                                                .onSuccess(dbReply ->
-                                                {
-                                                    AvailabilityCacheEngine.setDeviceStatus(databaseResponse.getJsonObject(0).getInteger(Constants.ID), Constants.UP);
-
-                                                    context.response().setStatusCode(Constants.SC_201)
-                                                            .end(new JsonObject()
-                                                                    .put(Constants.SUCCESS, Constants.TRUE)
-                                                                    .put(Constants.ID,databaseResponse.getJsonObject(0).getInteger(Constants.ID)).encode());
-
-                                                })
-                                                .onFailure(error -> dbServiceFailed(context, error.getMessage()));
-                                    }
-                                    else
-                                    {
-                                        context.response().setStatusCode(Constants.SC_400)
-                                                .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
-                                                        .put(Constants.ERROR,MESSAGE_DEVICE_IS_ALREADY_PROVISIONING)
-                                                        .encodePrettily());
-                                    }
-                                });
-
-
                     })
                     .onFailure(error -> dbServiceFailed(context, error.getMessage()));
         }
@@ -169,6 +395,78 @@ public class ProvisioningRouter extends AbstractRouter
         }
     }
 
+    /**
+     * Provisions the discovery profiles whose IDs are in the ids array of the body with a single upsert,
+     * instead of several round trips per profile. Replies one row per ID with the provision ID, the prior status
+     * and the outcome, one of CREATED, REACTIVATED, ALREADY_PROVISIONED, IP_CONFLICT, DUPLICATE, NOT_DISCOVERED or NOT_FOUND.
+     */
+    void handleBulkProvision(RoutingContext context)
+    {
+        context.request().bodyHandler(body ->
+        {
+            try
+            {
+                var ids = body.length() == 0 ? null : body.toJsonObject().getJsonArray(Constants.IDS);
+
+                if (ids == null || ids.isEmpty() || !ids.stream().allMatch(Integer.class::isInstance))
+                {
+                    context.response().setStatusCode(Constants.SC_400)
+                            .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                    .put(Constants.ERROR, MESSAGE_IDS_REQUIRED).encodePrettily());
+
+                    return;
+                }
+
+                DATABASE_SERVICE
+                        .executeColumnarQuery(new JsonObject()
+                                .put(Constants.QUERY, PROVISION_DEVICES_QUERY)
+                                .put(Constants.PARAMS, new JsonArray().add(ids)))
+                        .onSuccess(reply ->
+                        {
+                            markProvisioned(reply.getJsonArray(Constants.DATA, new JsonArray()));
+
+                            context.response().setStatusCode(Constants.SC_200).end(reply.encode());
+                        })
+                        .onFailure(error -> dbServiceFailed(context, error.getMessage()));
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error(ERROR_MESSAGE, exception);
+
+                context.response().setStatusCode(Constants.SC_400).end(exception.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Marks the devices created or reactivated by a provisioning statement as up, in one pass over its rows.
+     *
+     * @param rows rows returned by the provisioning statement
+     */
+    private static void markProvisioned(JsonArray rows)
+    {
+        for (var index = 0; index < rows.size(); index++)
+        {
+            var row = rows.getJsonObject(index);
+
+            var outcome = row.getString(OUTCOME);
+
+            if (OUTCOME_CREATED.equals(outcome) || OUTCOME_REACTIVATED.equals(outcome))
+            {
+                AvailabilityCacheEngine.setDeviceStatus(row.getInteger(Constants.PROVISION_ID), Constants.UP);
+            }
+        }
+    }
+
+    /**
+     * Lists provisioned devices, the results of a device are served by its own endpoints.
+     */
+    @Override
+    protected String getListTableName(RoutingContext context)
+    {
+        return Constants.PROVISION_TABLE;
+    }
+
     @Override
     void handleGetById(RoutingContext context)
     {
@@ -176,16 +474,18 @@ public class ProvisioningRouter extends AbstractRouter
         {
             if(isInvalidId(context.pathParam(Constants.ID),context)) return;
 
-            setReusableObjects();
+            var queryContext = acquireQueryContext();
 
-            reusableQueryObject.put(Constants.OPERATION, Constants.DB_SELECT)
+            queryContext.input().put(Constants.OPERATION, Constants.DB_SELECT)
                     .put(Constants.TABLE_NAME, Utils.getTableNameFromContext(context))
                     .put(Constants.CONDITIONS , new JsonObject().put(Constants.PROVISION_ID,
                             Integer.parseInt(context.pathParam(Constants.ID))));
 
             DATABASE_SERVICE
-                    .executeQuery(Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams))
-                    .onSuccess(reply -> context.response().setStatusCode(Constants.SC_200).end(reply.toString()))
+                    .executeQueryToBuffer(queryContext.build()
+                            .put(Constants.WORKLOAD, Constants.WORKLOAD_READ))
+                    .onComplete(asyncResult -> releaseQueryContext(queryContext))
+                    .onSuccess(reply -> context.response().setStatusCode(Constants.SC_200).end(reply))
                     .onFailure(error -> context.response().setStatusCode(Constants.SC_500).end(error.getMessage()));
 
         }
@@ -197,6 +497,297 @@ public class ProvisioningRouter extends AbstractRouter
         }
     }
 
+    /**
+     * Returns the latest polled metrics and availability of a device straight from the metrics cache.
+     */
+    void handleGetCurrent(RoutingContext context)
+    {
+        try
+        {
+            if (isInvalidId(context.pathParam(Constants.ID), context)) return;
+
+            var latestMetrics = MetricsCacheEngine.getLatestMetrics(Integer.parseInt(context.pathParam(Constants.ID)));
+
+            if (latestMetrics == null)
+            {
+                context.response().setStatusCode(Constants.SC_404)
+                        .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                .put(Constants.ERROR, MESSAGE_NO_CURRENT_METRICS).encodePrettily());
+
+                return;
+            }
+
+            context.response().setStatusCode(Constants.SC_200)
+                    .end(new JsonObject().put(Constants.SUCCESS, Constants.TRUE).put(Constants.DATA, latestMetrics).encode());
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error(ERROR_MESSAGE, exception);
+
+            context.response().setStatusCode(Constants.SC_500).end(exception.getMessage());
+        }
+    }
+
+    /**
+     * Returns the latest polled metrics of several devices, the body holds their IDs in an ids array.
+     * Devices that were not polled yet are left out of the result.
+     */
+    void handleGetCurrentBatch(RoutingContext context)
+    {
+        context.request().bodyHandler(body ->
+        {
+            try
+            {
+                var ids = body.length() == 0 ? null : body.toJsonObject().getJsonArray(Constants.IDS);
+
+                if (ids == null || ids.isEmpty())
+                {
+                    context.response().setStatusCode(Constants.SC_400)
+                            .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                    .put(Constants.ERROR, MESSAGE_IDS_REQUIRED).encodePrettily());
+
+                    return;
+                }
+
+                var data = new JsonArray();
+
+                for (var index = 0; index < ids.size(); index++)
+                {
+                    var latestMetrics = MetricsCacheEngine.getLatestMetrics(ids.getInteger(index));
+
+                    if (latestMetrics != null)
+                    {
+                        data.add(latestMetrics);
+                    }
+                }
+
+                context.response().setStatusCode(Constants.SC_200)
+                        .end(new JsonObject().put(Constants.SUCCESS, Constants.TRUE).put(Constants.DATA, data).encode());
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error(ERROR_MESSAGE, exception);
+
+                context.response().setStatusCode(Constants.SC_400).end(exception.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Returns the numeric metric history of a device between the from and to query parameters, defaulting to the last day.
+     * Short ranges are served from the raw results, longer ones from the hourly or daily rollups completed with the samples
+     * of the partial end buckets and those not rolled up yet, so the number of returned rows stays bounded. The optional metric parameter limits the history to one metric.
+     */
+    void handleGetHistory(RoutingContext context)
+    {
+        try
+        {
+            if (isInvalidId(context.pathParam(Constants.ID), context)) return;
+
+            var to = parseTime(context.queryParams().get(Constants.TO), Instant.now());
+
+            var from = parseTime(context.queryParams().get(Constants.FROM), to.minus(DEFAULT_HISTORY_RANGE));
+
+            if (!from.isBefore(to))
+            {
+                context.response().setStatusCode(Constants.SC_400)
+                        .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                .put(Constants.ERROR, MESSAGE_INVALID_TIME_RANGE).encodePrettily());
+
+                return;
+            }
+
+            var range = Duration.between(from, to);
+
+            var params = new JsonArray()
+                    .add(Integer.parseInt(context.pathParam(Constants.ID)))
+                    .add(from.toString())
+                    .add(to.toString())
+                    .add(context.queryParams().get(Constants.METRIC));
+
+            String resolution;
+
+            String query;
+
+            if (range.compareTo(rawMaxRange) <= 0)
+            {
+                resolution = RESOLUTION_RAW;
+
+                query = FETCH_RAW_HISTORY_QUERY;
+            }
+            else if (range.compareTo(hourlyMaxRange) <= 0)
+            {
+                resolution = RESOLUTION_HOURLY;
+
+                query = FETCH_HOURLY_HISTORY_QUERY;
+
+                addRollupBounds(params, from, to, ChronoUnit.HOURS);
+            }
+            else
+            {
+                resolution = RESOLUTION_DAILY;
+
+                query = FETCH_DAILY_HISTORY_QUERY;
+
+                addRollupBounds(params, from, to, ChronoUnit.DAYS);
+            }
+
+            DATABASE_SERVICE
+                    .executeQuery(new JsonObject()
+                            .put(Constants.QUERY, query)
+                            .put(Constants.PARAMS, params)
+                            .put(Constants.WORKLOAD, Constants.WORKLOAD_READ))
+                    .onSuccess(reply -> context.response().setStatusCode(Constants.SC_200)
+                            .end(reply.put(Constants.RESOLUTION, resolution).encode()))
+                    .onFailure(error -> dbServiceFailed(context, error.getMessage()));
+        }
+        catch (DateTimeParseException exception)
+        {
+            context.response().setStatusCode(Constants.SC_400)
+                    .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                            .put(Constants.ERROR, MESSAGE_INVALID_TIME_RANGE).encodePrettily());
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error(ERROR_MESSAGE, exception);
+
+            context.response().setStatusCode(Constants.SC_500).end(exception.getMessage());
+        }
+    }
+
+    /**
+     * Returns per bucket aggregates (avg, min, max, p95, samples) of several devices and metrics.
+     * The body holds ids, an optional metrics array, from and to defaulting to the last day, and the bucket width in seconds.
+     * Buckets within the raw range or not aligned to whole hours are computed from the metric samples,
+     * others from the hourly or daily rollups, which carry no p95, completed with the samples of the partial
+     * buckets at both ends and those the rollup has not consumed yet. Rows are encoded straight into the response buffer.
+     */
+    void handleQueryMetrics(RoutingContext context)
+    {
+        context.request().bodyHandler(body ->
+        {
+            try
+            {
+                var request = body.length() == 0 ? new JsonObject() : body.toJsonObject();
+
+                var ids = request.getJsonArray(Constants.IDS);
+
+                if (ids == null || ids.isEmpty() || !ids.stream().allMatch(Integer.class::isInstance))
+                {
+                    context.response().setStatusCode(Constants.SC_400)
+                            .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                    .put(Constants.ERROR, MESSAGE_IDS_REQUIRED).encodePrettily());
+
+                    return;
+                }
+
+                var metrics = request.getJsonArray(Constants.METRICS);
+
+                if (metrics != null && (metrics.isEmpty() || !metrics.stream().allMatch(String.class::isInstance)))
+                {
+                    context.response().setStatusCode(Constants.SC_400)
+                            .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                    .put(Constants.ERROR, MESSAGE_INVALID_METRICS).encodePrettily());
+
+                    return;
+                }
+
+                var to = parseTime(request.getString(Constants.TO), Instant.now());
+
+                var from = parseTime(request.getString(Constants.FROM), to.minus(DEFAULT_HISTORY_RANGE));
+
+                if (!from.isBefore(to))
+                {
+                    context.response().setStatusCode(Constants.SC_400)
+                            .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                    .put(Constants.ERROR, MESSAGE_INVALID_TIME_RANGE).encodePrettily());
+
+                    return;
+                }
+
+                var range = Duration.between(from, to);
+
+                var bucket = request.getLong(Constants.BUCKET, 0L);
+
+                if (bucket < 1 || range.toSeconds() / bucket >= metricsQueryMaxBuckets)
+                {
+                    context.response().setStatusCode(Constants.SC_400)
+                            .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                    .put(Constants.ERROR, String.format(MESSAGE_INVALID_BUCKET, metricsQueryMaxBuckets))
+                                    .encodePrettily());
+
+                    return;
+                }
+
+                var params = new JsonArray()
+                        .add(ids)
+                        .add(metrics)
+                        .add(from.toString())
+                        .add(to.toString())
+                        .add(bucket);
+
+                String query;
+
+                if (range.compareTo(rawMaxRange) <= 0 || bucket % SECONDS_PER_HOUR != 0)
+                {
+                    query = QUERY_RAW_METRICS_QUERY;
+                }
+                else if (range.compareTo(hourlyMaxRange) <= 0 || bucket % SECONDS_PER_DAY != 0)
+                {
+                    query = QUERY_HOURLY_METRICS_QUERY;
+
+                    addRollupBounds(params, from, to, ChronoUnit.HOURS);
+                }
+                else
+                {
+                    query = QUERY_DAILY_METRICS_QUERY;
+
+                    addRollupBounds(params, from, to, ChronoUnit.DAYS);
+                }
+
+                DATABASE_SERVICE
+                        .executeQueryToBuffer(new JsonObject()
+                                .put(Constants.QUERY, query)
+                                .put(Constants.PARAMS, params)
+                                .put(Constants.WORKLOAD, Constants.WORKLOAD_READ))
+                        .onSuccess(reply -> context.response().setStatusCode(Constants.SC_200).end(reply))
+                        .onFailure(error -> dbServiceFailed(context, error.getMessage()));
+            }
+            catch (DateTimeParseException exception)
+            {
+                context.response().setStatusCode(Constants.SC_400)
+                        .end(new JsonObject().put(Constants.SUCCESS, Constants.FALSE)
+                                .put(Constants.ERROR, MESSAGE_INVALID_TIME_RANGE).encodePrettily());
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error(ERROR_MESSAGE, exception);
+
+                context.response().setStatusCode(Constants.SC_400).end(exception.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Adds the first and the end rollup bucket lying wholly inside [from, to), buckets are UTC aligned.
+     */
+    private static void addRollupBounds(JsonArray params, Instant from, Instant to, ChronoUnit unit)
+    {
+        var rollupFrom = from.truncatedTo(unit);
+
+        if (rollupFrom.isBefore(from))
+        {
+            rollupFrom = rollupFrom.plus(1, unit);
+        }
+
+        params.add(rollupFrom.toString()).add(to.truncatedTo(unit).toString());
+    }
+
+    private static Instant parseTime(String value, Instant defaultValue)
+    {
+        return value == null || value.isEmpty() ? defaultValue : Instant.parse(value);
+    }
+
     @Override
     void handleDelete(RoutingContext context)
     {
@@ -206,21 +797,25 @@ public class ProvisioningRouter extends AbstractRouter
 
             var id = Integer.parseInt(context.pathParam(Constants.ID));
 
-            setReusableObjects();
+            var queryContext = acquireQueryContext();
 
-            reusableQueryObject
+            queryContext.input()
                     .put(Constants.OPERATION, Constants.DB_UPDATE)
                     .put(Constants.CONDITIONS , new JsonObject().put(Constants.ID,id))
                     .put(Constants.TABLE_NAME, Utils.getTableNameFromContext(context))
                     .put(Constants.DATA, new JsonObject()
                             .put(Constants.STATUS, Constants.FALSE));
 
-            DATABASE_SERVICE.executeQuery(Utils.buildQuery(reusableQueryObject, reusableStringQuery, reusableQueryParams)).onSuccess(reply ->
+            DATABASE_SERVICE.executeQuery(queryContext.build())
+                    .onComplete(asyncResult -> releaseQueryContext(queryContext))
+                    .onSuccess(reply ->
                     {
                         try
                         {
                             AvailabilityCacheEngine.removeDevice(id);
 
+                            MetricsCacheEngine.removeDevice(id);
+
                             context.response().setStatusCode(Constants.SC_200).end(reply.encode());
                         }
                         catch (Exception exception)
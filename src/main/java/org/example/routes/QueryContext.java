@@ -0,0 +1,53 @@
+package org.example.routes;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.utils.Utils;
+
+/**
+ * Query building state of a single request, the query description passed to {@link Utils#buildQuery}
+ * together with the SQL text and parameters it fills. Routers borrow a context per request from a small pool
+ * and return it once the query completed, so requests in flight never share one.
+ */
+final class QueryContext
+{
+    private final StringBuilder query = new StringBuilder();
+
+    private final JsonArray params = new JsonArray();
+
+    private final JsonObject input = new JsonObject();
+
+    /**
+     * @return the query description, operation, table name, data, conditions and so on
+     */
+    JsonObject input()
+    {
+        return input;
+    }
+
+    /**
+     * Builds the query described by {@link #input()}.
+     *
+     * @return JsonObject containing "success", "query" and "params", or the error of an invalid description
+     */
+    JsonObject build()
+    {
+        return Utils.buildQuery(input, query, params);
+    }
+
+    /**
+     * Clears the context for the next request.
+     *
+     * @return this context
+     */
+    QueryContext reset()
+    {
+        query.setLength(0);
+
+        params.clear();
+
+        input.clear();
+
+        return this;
+    }
+}
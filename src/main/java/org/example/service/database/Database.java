@@ -2,7 +2,10 @@ package org.example.service.database;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
 import io.vertx.serviceproxy.ServiceBinder;
+import org.example.utils.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,6 +21,8 @@ public class Database extends AbstractVerticle
 
     public static final String DB_SERVICE_ADDRESS = "database-service";
 
+    private MessageConsumer<JsonObject> metricsConsumer;
+
     /**
      * Starts the verticle by registering the {@link DatabaseService} on the Event Bus using Service Proxy.
      *
@@ -48,6 +53,16 @@ public class Database extends AbstractVerticle
                             {
                                 LOGGER.info("Services registered at {}", DB_SERVICE_ADDRESS);
 
+                                // Expose per pool connection wait metrics
+                                metricsConsumer = vertx.eventBus().localConsumer(Constants.DATABASE_METRICS_ADDRESS,
+                                        message -> message.reply(DatabaseClient.getPoolMetrics()));
+
+                                // Publish row changes for cache invalidation, caches keep working on their own
+                                // until the listener connects, so startup does not wait for it
+                                DatabaseClient.listenForRowChanges()
+                                        .onSuccess(v -> LOGGER.info("Row change listener connected"))
+                                        .onFailure(error -> LOGGER.warn("Row change listener stopped: {}", error.getMessage()));
+
                                 startPromise.complete();
                             }
                         });
@@ -74,6 +89,11 @@ public class Database extends AbstractVerticle
     @Override
     public void stop(Promise<Void> stopFuture)
     {
+        if (metricsConsumer != null)
+        {
+            metricsConsumer.unregister();
+        }
+
         // Close database client and release any resources
         DatabaseClient.close();
 
@@ -1,19 +1,41 @@
 package org.example.service.database;
 
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgBuilder;
 import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.pubsub.PgSubscriber;
 import io.vertx.sqlclient.Pool;
 import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.SqlConnection;
 import org.example.BootStrap;
 import org.example.utils.Constants;
 import org.example.utils.MotaDataConfigUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
- * Singleton class responsible for creating and managing the shared PostgreSQL connection pool (`Pool`) using Vert.x.
- * Reads database configuration from the application config and lazily initializes the pool on demand.
+ * Singleton class responsible for creating and managing the PostgreSQL connection pools (`Pool`) using Vert.x.
+ * Every workload class (API, ingestion, maintenance) gets its own separately sized pool, so bulk result inserts
+ * never queue API reads behind them. Reads database configuration from the application config and lazily
+ * initializes each pool on demand.
+ * <p>
+ * Read-only queries of the {@code read} workload are routed to the configured read replicas. Replica lag is checked
+ * periodically, replicas behind the lag threshold are skipped and the primary API pool serves reads when none is usable.
+ * <p>
+ * Row changes of the profile and provision tables are received through {@code LISTEN} on a dedicated connection
+ * and published on the event bus, so in-memory caches can invalidate exactly the changed rows.
  */
 public class DatabaseClient
 {
@@ -23,61 +45,134 @@ public class DatabaseClient
     private static final String DATABASE = "database.name";
     private static final String USER = "database.user";
     private static final String PASSWORD = "database.password";
+    private static final String REPLICAS = "database.replicas";
+    private static final String REPLICA_MAX_LAG = "database.replica.max.lag.seconds";
+    private static final String REPLICA_CHECK_INTERVAL = "database.replica.check.interval.in.milliseconds";
+    private static final String ROW_CHANGES_RECONNECT_INTERVAL = "database.row.changes.reconnect.interval.in.milliseconds";
+    private static final String ROW_CHANGES_RECONNECT_MAX_INTERVAL = "database.row.changes.reconnect.max.interval.in.milliseconds";
+
+    // Per pool configuration keys, formatted with the workload name
+    private static final String POOL_MAX_SIZE = "database.pool.%s.max.size";
+    private static final String POOL_PREPARED_STATEMENT_CACHE_SIZE = "database.pool.%s.prepared.statement.cache.size";
+    private static final String POOL_MAX_WAIT_QUEUE_SIZE = "database.pool.%s.max.wait.queue.size";
+
+    // Per pool defaults
+    private static final Map<String, Integer> DEFAULT_POOL_MAX_SIZE = Map.of(
+            Constants.WORKLOAD_API, 5,
+            Constants.WORKLOAD_INGESTION, 4,
+            Constants.WORKLOAD_MAINTENANCE, 1,
+            Constants.WORKLOAD_READ, 5);
+    private static final int DEFAULT_PREPARED_STATEMENT_CACHE_SIZE = 256;
+    private static final int DEFAULT_MAX_WAIT_QUEUE_SIZE = -1;
+    private static final int DEFAULT_REPLICA_MAX_LAG = 10;
+    private static final long DEFAULT_REPLICA_CHECK_INTERVAL = 5000;
+    private static final long DEFAULT_ROW_CHANGES_RECONNECT_INTERVAL = 2000;
+    private static final long DEFAULT_ROW_CHANGES_RECONNECT_MAX_INTERVAL = 60000;
+
+    // Channel notified by the row change triggers
+    private static final String ROW_CHANGES_CHANNEL = "nms_row_changes";
+
+    // Replication lag in seconds, 0 on a primary or a fully caught up replica. A replica without a running WAL receiver
+    // has replayed all it received and would look caught up while falling behind, its lag is unknown and reported as null.
+    // pg_stat_wal_receiver has a row, with the pid visible to any role, only while the receiver runs
+    private static final String REPLICA_LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+            "WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver) THEN NULL " +
+            "WHEN pg_last_wal_receive_lsn() IS DISTINCT FROM pg_last_wal_replay_lsn() " +
+            "THEN EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) ELSE 0 END::float8 AS lag";
+
+    // Reported lag of a replica whose lag is unknown
+    private static final double UNKNOWN_LAG = -1;
+
+    // Metric keys
+    private static final String MAX_SIZE = "max.size";
+    private static final String ACQUISITIONS = "acquisitions";
+    private static final String AVG_WAIT_TIME = "avg.wait.time.ms";
+    private static final String MAX_WAIT_TIME = "max.wait.time.ms";
+    private static final String REPLICA_LAG = "lag.seconds";
+    private static final String REPLICA_HEALTHY = "healthy";
+    private static final String REPLICA_METRICS = "replicas";
+    private static final String REPLICA_HOST = "host";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseClient.class);
 
-    // Shared Pool instance
-    private static Pool instance;
+    // Pools by workload
+    private static final Map<String, Pool> POOLS = new HashMap<>();
+
+    // Connection wait time metrics by workload
+    private static final Map<String, WaitMetrics> WAIT_METRICS = new ConcurrentHashMap<>();
+
+    // Read replicas, created on the first read
+    private static final List<Replica> REPLICA_POOLS = new ArrayList<>();
+
+    private static boolean replicasInitialized;
+
+    private static int nextReplica;
+
+    // LISTEN connection for row change notifications
+    private static PgSubscriber subscriber;
+
+    private static boolean subscribed;
 
     // Private constructor to prevent instantiation
     private DatabaseClient() {}
 
     /**
-     * Lazily initializes and returns the shared instance of the PostgreSQL connection pool.
+     * Lazily initializes and returns the API connection pool.
      *
-     * @return shared {@link Pool} instance for database operations
+     * @return shared {@link Pool} instance for API database operations
      */
-    public static synchronized Pool getInstance()
+    public static Pool getInstance()
     {
+        return getInstance(Constants.WORKLOAD_API);
+    }
+
+    /**
+     * Lazily initializes and returns the connection pool of a workload class.
+     * Unknown workloads are served by the API pool.
+     *
+     * @param workload workload class, one of the {@code Constants.WORKLOAD_*} values
+     * @return shared {@link Pool} instance for the workload
+     */
+    public static synchronized Pool getInstance(String workload)
+    {
+        workload = resolveWorkload(workload);
+
+        if (workload.equals(Constants.WORKLOAD_READ))
+        {
+            return getReadInstance();
+        }
+
         // Return existing instance if already created
+        var instance = POOLS.get(workload);
+
         if (instance == null)
         {
             try
             {
-                // Configure connection options using app-level config or default constants
-                var connectOptions = new PgConnectOptions()
-                        .setHost(MotaDataConfigUtil.getConfig().getString(HOST, Constants.DB_HOST))
-                        .setPort(MotaDataConfigUtil.getConfig().getInteger(PORT, Constants.DB_PORT))
-                        .setDatabase(MotaDataConfigUtil.getConfig().getString(DATABASE, Constants.DB_NAME))
-                        .setUser(MotaDataConfigUtil.getConfig().getString(USER, Constants.DB_USER))
-                        .setPassword(MotaDataConfigUtil.getConfig().getString(PASSWORD))
-                        .setReconnectAttempts(2)        // Retry attempts on failure
-                        .setReconnectInterval(2000L)   // Retry interval in milliseconds
-                        .setIdleTimeout(60)
-                        .setIdleTimeoutUnit(TimeUnit.SECONDS);
-
-                // Configure pool options
-                var poolOptions = new PoolOptions()
-                        .setMaxSize(5); // Max number of connections in pool
-
-                // Build the pool using Vert.x and provided options
-                instance = PgBuilder.pool()
-                        .with(poolOptions)
-                        .connectingTo(connectOptions)
-                        .using(BootStrap.getVertx())
-                        .build();
-
-                instance.query(Constants.DB_CONNECTION_CHECK_QUERY).execute(asyncResult ->
+                var config = MotaDataConfigUtil.getConfig();
+
+                var pool = createPool(workload, workload, config.getString(HOST, Constants.DB_HOST),
+                        config.getInteger(PORT, Constants.DB_PORT));
+
+                POOLS.put(workload, pool);
+
+                var name = workload;
+
+                pool.query(Constants.DB_CONNECTION_CHECK_QUERY).execute(asyncResult ->
                 {
                     if(asyncResult.succeeded())
                     {
-                        LOGGER.info("Connected to database");
+                        LOGGER.info("Connected to database with {} pool", name);
                     }
                     else
                     {
-                        instance = null;
+                        LOGGER.error("Failed to connect to database with {} pool: {}", name, asyncResult.cause().getMessage());
+
+                        removePool(name, pool);
                     }
                 });
+
+                instance = pool;
             }
             catch (Exception exception)
             {
@@ -91,25 +186,469 @@ public class DatabaseClient
     }
 
     /**
-     * Closes and resets the shared {@link Pool} instance, releasing all resources.
+     * Picks a read replica in round robin order among the ones within the lag threshold.
+     * Falls back to the primary API pool when no replica is configured or usable.
+     *
+     * @return pool to run a read-only query on
+     */
+    private static Pool getReadInstance()
+    {
+        if (!replicasInitialized)
+        {
+            replicasInitialized = Constants.TRUE;
+
+            initReplicas();
+        }
+
+        for (var attempt = 0; attempt < REPLICA_POOLS.size(); attempt++)
+        {
+            var replica = REPLICA_POOLS.get(nextReplica);
+
+            nextReplica = (nextReplica + 1) % REPLICA_POOLS.size();
+
+            if (replica.healthy)
+            {
+                return replica.pool;
+            }
+        }
+
+        return getInstance(Constants.WORKLOAD_API);
+    }
+
+    /**
+     * Creates a pool per configured replica and schedules the periodic lag check.
      */
-    public static synchronized void close()
+    private static void initReplicas()
+    {
+        try
+        {
+            var config = MotaDataConfigUtil.getConfig();
+
+            var replicas = config.getJsonArray(REPLICAS, new JsonArray());
+
+            for (var index = 0; index < replicas.size(); index++)
+            {
+                var replica = replicas.getJsonObject(index);
+
+                var host = replica.getString(REPLICA_HOST, Constants.DB_HOST);
+
+                var port = replica.getInteger(Constants.PORT, Constants.DB_PORT);
+
+                REPLICA_POOLS.add(new Replica(host, port,
+                        createPool(Constants.WORKLOAD_READ, Constants.WORKLOAD_READ + "-" + host + ":" + port, host, port)));
+            }
+
+            if (!REPLICA_POOLS.isEmpty())
+            {
+                var maxLag = config.getInteger(REPLICA_MAX_LAG, DEFAULT_REPLICA_MAX_LAG);
+
+                checkReplicaLag(maxLag);
+
+                BootStrap.getVertx().setPeriodic(config.getLong(REPLICA_CHECK_INTERVAL, DEFAULT_REPLICA_CHECK_INTERVAL),
+                        timerId -> checkReplicaLag(maxLag));
+
+                LOGGER.info("Routing reads to {} replica(s)", REPLICA_POOLS.size());
+            }
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Failed to create read replica clients: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Measures the replication lag of every replica and marks it usable only when it is within the threshold.
+     * A replica not streaming from the primary, or that has not replayed any transaction yet, has an unknown lag and is skipped.
+     *
+     * @param maxLag lag threshold in seconds
+     */
+    private static void checkReplicaLag(int maxLag)
+    {
+        for (var replica : REPLICA_POOLS)
+        {
+            replica.pool.query(REPLICA_LAG_QUERY).execute(asyncResult ->
+            {
+                if (asyncResult.succeeded())
+                {
+                    var lag = asyncResult.result().iterator().next().getDouble(0);
+
+                    replica.lag = lag == null ? UNKNOWN_LAG : lag;
+
+                    var healthy = lag != null && lag <= maxLag;
+
+                    if (healthy != replica.healthy)
+                    {
+                        if (lag == null)
+                        {
+                            LOGGER.warn("Replica {}:{} is now skipped, it is not streaming from the primary", replica.host, replica.port);
+                        }
+                        else
+                        {
+                            LOGGER.info("Replica {}:{} is now {} (lag {}s)", replica.host, replica.port,
+                                    healthy ? "in use" : "skipped", replica.lag);
+                        }
+                    }
+
+                    replica.healthy = healthy;
+                }
+                else
+                {
+                    if (replica.healthy)
+                    {
+                        LOGGER.warn("Replica {}:{} unreachable: {}", replica.host, replica.port,
+                                asyncResult.cause().getMessage());
+                    }
+
+                    replica.healthy = Constants.FALSE;
+                }
+            });
+        }
+    }
+
+    /**
+     * Builds a pool sized and tuned by the settings of a workload class.
+     *
+     * @param workload workload class whose pool settings apply
+     * @param name     pool name
+     * @param host     database host
+     * @param port     database port
+     * @return new {@link Pool}
+     */
+    private static Pool createPool(String workload, String name, String host, int port)
+    {
+        var config = MotaDataConfigUtil.getConfig();
+
+        // Configure connection options using app-level config or default constants.
+        // Statements run on borrowed connections one at a time, so pipelining is left at its default
+        var connectOptions = createConnectOptions(host, port)
+                .setCachePreparedStatements(Constants.TRUE)
+                .setPreparedStatementCacheMaxSize(config.getInteger(String.format(POOL_PREPARED_STATEMENT_CACHE_SIZE,
+                        workload), DEFAULT_PREPARED_STATEMENT_CACHE_SIZE));
+
+        // Configure pool options
+        var poolOptions = new PoolOptions()
+                .setName(name)
+                .setMaxSize(config.getInteger(String.format(POOL_MAX_SIZE, workload),
+                        DEFAULT_POOL_MAX_SIZE.get(workload)))
+                .setMaxWaitQueueSize(config.getInteger(String.format(POOL_MAX_WAIT_QUEUE_SIZE, workload),
+                        DEFAULT_MAX_WAIT_QUEUE_SIZE));
+
+        WAIT_METRICS.putIfAbsent(workload, new WaitMetrics(poolOptions.getMaxSize()));
+
+        // Build the pool using Vert.x and provided options
+        return PgBuilder.pool()
+                .with(poolOptions)
+                .connectingTo(connectOptions)
+                .using(BootStrap.getVertx())
+                .build();
+    }
+
+    /**
+     * Builds the connection options shared by pools and the notification listener.
+     *
+     * @param host database host
+     * @param port database port
+     * @return new {@link PgConnectOptions}
+     */
+    private static PgConnectOptions createConnectOptions(String host, int port)
+    {
+        var config = MotaDataConfigUtil.getConfig();
+
+        return new PgConnectOptions()
+                .setHost(host)
+                .setPort(port)
+                .setDatabase(config.getString(DATABASE, Constants.DB_NAME))
+                .setUser(config.getString(USER, Constants.DB_USER))
+                .setPassword(config.getString(PASSWORD))
+                .setReconnectAttempts(2)        // Retry attempts on failure
+                .setReconnectInterval(2000L)   // Retry interval in milliseconds
+                .setIdleTimeout(60)
+                .setIdleTimeoutUnit(TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts listening for row change notifications on the primary and publishes each of them
+     * on {@link Constants#ROW_CHANGES_ADDRESS}. Failed connects, the initial one included, are retried with a
+     * doubling delay up to a cap. After a reconnect or a late initial connect a {@link Constants#ROW_CHANGE_RESYNC}
+     * change is published because notifications sent meanwhile are lost.
+     *
+     * @return a {@link Future} completed once the listener is connected
+     */
+    public static synchronized Future<Void> listenForRowChanges()
+    {
+        if (subscriber != null)
+        {
+            return Future.succeededFuture();
+        }
+
+        var config = MotaDataConfigUtil.getConfig();
+
+        var vertx = BootStrap.getVertx();
+
+        var reconnectInterval = config.getLong(ROW_CHANGES_RECONNECT_INTERVAL, DEFAULT_ROW_CHANGES_RECONNECT_INTERVAL);
+
+        var reconnectMaxInterval = config.getLong(ROW_CHANGES_RECONNECT_MAX_INTERVAL, DEFAULT_ROW_CHANGES_RECONNECT_MAX_INTERVAL);
+
+        Function<Integer, Long> backoff = retries -> Math.min(reconnectInterval << Math.min(retries, 16), reconnectMaxInterval);
+
+        subscriber = PgSubscriber.subscriber(vertx, createConnectOptions(config.getString(HOST, Constants.DB_HOST),
+                        config.getInteger(PORT, Constants.DB_PORT)))
+                .reconnectPolicy(backoff);
+
+        subscriber.channel(ROW_CHANGES_CHANNEL)
+                .handler(payload ->
+                {
+                    try
+                    {
+                        vertx.eventBus().publish(Constants.ROW_CHANGES_ADDRESS, new JsonObject(payload));
+                    }
+                    catch (Exception exception)
+                    {
+                        LOGGER.error("Invalid row change notification: {}", exception.getMessage());
+                    }
+                })
+                .subscribeHandler(v ->
+                {
+                    if (subscribed)
+                    {
+                        LOGGER.warn("Row change listener reconnected, requesting cache resync");
+
+                        vertx.eventBus().publish(Constants.ROW_CHANGES_ADDRESS, new JsonObject()
+                                .put(Constants.ROW_CHANGE_OPERATION, Constants.ROW_CHANGE_RESYNC));
+                    }
+
+                    subscribed = Constants.TRUE;
+                });
+
+        var promise = Promise.<Void>promise();
+
+        connect(subscriber, backoff, 0, promise);
+
+        return promise.future();
+    }
+
+    /**
+     * Connects the row change listener, retrying on failure until it connects or is closed.
+     */
+    private static void connect(PgSubscriber listener, Function<Integer, Long> backoff, int retries, Promise<Void> promise)
+    {
+        listener.connect().onComplete(result ->
+        {
+            if (result.succeeded())
+            {
+                promise.tryComplete();
+
+                return;
+            }
+
+            synchronized (DatabaseClient.class)
+            {
+                if (listener != subscriber)
+                {
+                    promise.tryFail("Row change listener closed");
+
+                    return;
+                }
+
+                // Caches loaded while the listener was down may be stale, resync them once it connects
+                subscribed = Constants.TRUE;
+            }
+
+            var delay = backoff.apply(retries);
+
+            LOGGER.error("Failed to listen for row changes, retrying in {} ms: {}", delay, result.cause().getMessage());
+
+            BootStrap.getVertx().setTimer(delay, id -> connect(listener, backoff, retries + 1, promise));
+        });
+    }
+
+    /**
+     * Borrows a connection from the pool of a workload class, runs the given function on it and returns it to the pool.
+     * The time spent waiting for the connection is recorded per workload.
+     *
+     * @param workload workload class deciding which pool serves the call
+     * @param function work to run on the borrowed connection
+     * @return a {@link Future} completed with the result of the function
+     */
+    public static <T> Future<T> withConnection(String workload, Function<SqlConnection, Future<T>> function)
     {
-        // Close only if pool is initialized
-        if (instance != null)
+        var pool = getInstance(workload);
+
+        if (pool == null)
+        {
+            return Future.failedFuture("Database client not available");
+        }
+
+        // Reads served by the primary are accounted as reads as well
+        var metrics = WAIT_METRICS.computeIfAbsent(resolveWorkload(workload),
+                key -> new WaitMetrics(DEFAULT_POOL_MAX_SIZE.get(key)));
+
+        var startTime = System.nanoTime();
+
+        return pool.getConnection().compose(connection ->
         {
+            metrics.record(System.nanoTime() - startTime);
+
             try
             {
-                instance.close();
+                return function.apply(connection).onComplete(asyncResult -> connection.close());
             }
             catch (Exception exception)
             {
-                LOGGER.error("Failed to close database client: {}", exception.getMessage());
+                connection.close();
+
+                return Future.failedFuture(exception);
             }
-            finally
+        });
+    }
+
+    /**
+     * Returns connection wait time metrics of every pool created so far.
+     *
+     * @return JsonObject keyed by workload
+     */
+    public static JsonObject getPoolMetrics()
+    {
+        var metrics = new JsonObject();
+
+        WAIT_METRICS.forEach((workload, waitMetrics) -> metrics.put(workload, waitMetrics.toJson()));
+
+        var replicas = new JsonArray();
+
+        synchronized (DatabaseClient.class)
+        {
+            for (var replica : REPLICA_POOLS)
             {
-                instance = null;
+                replicas.add(new JsonObject()
+                        .put(REPLICA_HOST, replica.host)
+                        .put(Constants.PORT, replica.port)
+                        .put(REPLICA_LAG, replica.lag)
+                        .put(REPLICA_HEALTHY, replica.healthy));
             }
         }
+
+        return metrics.put(REPLICA_METRICS, replicas);
+    }
+
+    /**
+     * Closes and resets all pools, releasing all resources.
+     */
+    public static synchronized void close()
+    {
+        for (var pool : POOLS.values())
+        {
+            try
+            {
+                pool.close();
+            }
+            catch (Exception exception)
+            {
+                LOGGER.error("Failed to close database client: {}", exception.getMessage());
+            }
+        }
+
+        POOLS.clear();
+
+        for (var replica : REPLICA_POOLS)
+        {
+            replica.pool.close();
+        }
+
+        REPLICA_POOLS.clear();
+
+        replicasInitialized = Constants.FALSE;
+
+        if (subscriber != null)
+        {
+            subscriber.close();
+
+            subscriber = null;
+
+            subscribed = Constants.FALSE;
+        }
+    }
+
+    private static String resolveWorkload(String workload)
+    {
+        return workload != null && DEFAULT_POOL_MAX_SIZE.containsKey(workload) ? workload : Constants.WORKLOAD_API;
+    }
+
+    /**
+     * Drops a pool whose connection check failed and closes it, so its connections and resources are released.
+     * The next {@link #getInstance(String)} of the workload creates a new pool.
+     */
+    private static synchronized void removePool(String workload, Pool pool)
+    {
+        if (POOLS.remove(workload, pool))
+        {
+            pool.close()
+                    .onFailure(error -> LOGGER.error("Failed to close {} pool: {}", workload, error.getMessage()));
+        }
+    }
+
+    /**
+     * Read replica pool together with its last measured lag.
+     */
+    private static final class Replica
+    {
+        private final String host;
+
+        private final int port;
+
+        private final Pool pool;
+
+        // Lag in seconds, -1 when unknown
+        private volatile double lag;
+
+        // Unused until the first lag check succeeds
+        private volatile boolean healthy;
+
+        private Replica(String host, int port, Pool pool)
+        {
+            this.host = host;
+
+            this.port = port;
+
+            this.pool = pool;
+        }
+    }
+
+    /**
+     * Connection acquisition statistics of one pool.
+     */
+    private static final class WaitMetrics
+    {
+        private final int maxSize;
+
+        private final AtomicLong acquisitions = new AtomicLong();
+
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private WaitMetrics(int maxSize)
+        {
+            this.maxSize = maxSize;
+        }
+
+        private void record(long waitNanos)
+        {
+            acquisitions.incrementAndGet();
+
+            totalWaitNanos.addAndGet(waitNanos);
+
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        private JsonObject toJson()
+        {
+            var count = acquisitions.get();
+
+            return new JsonObject()
+                    .put(MAX_SIZE, maxSize)
+                    .put(ACQUISITIONS, count)
+                    .put(AVG_WAIT_TIME, count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count))
+                    .put(MAX_WAIT_TIME, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        }
     }
 }
@@ -2,8 +2,11 @@ package org.example.service.database;
 
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import org.example.BootStrap;
+import org.example.utils.Constants;
+import org.example.utils.MotaDataConfigUtil;
 
 /**
  * A Vert.x Service Proxy interface for interacting with the database asynchronously.
@@ -12,6 +15,9 @@ import org.example.BootStrap;
 @ProxyGen
 public interface DatabaseService
 {
+    // Config key enabling in-process invocation instead of event bus proxies
+    String LOCAL_INVOCATION = "database.service.local";
+
     /**
      * Factory method to create a local instance of the {@link DatabaseService}.
      *
@@ -23,13 +29,20 @@ public interface DatabaseService
     }
 
     /**
-     * Factory method to create a service proxy client that communicates over the Vert.x event bus.
+     * Factory method to create a service client.
+     * When {@code database.service.local} is enabled the caller shares the process with the service,
+     * so the implementation is invoked directly instead of copying every query and reply through the event bus.
      *
      * @param address the event bus address where the service is registered
-     * @return a proxy instance of {@link DatabaseService}
+     * @return a proxy instance of {@link DatabaseService}, or the local implementation
      */
     static DatabaseService createProxy(String address)
     {
+        if (MotaDataConfigUtil.getConfig().getBoolean(LOCAL_INVOCATION, Constants.FALSE))
+        {
+            return create();
+        }
+
         return new DatabaseServiceVertxEBProxy(BootStrap.getVertx(), address);
     }
 
@@ -40,4 +53,27 @@ public interface DatabaseService
      * @return a {@link Future} containing the result as a {@link JsonObject}, or an error if execution fails
      */
     Future<JsonObject> executeQuery(JsonObject query);
+
+    /**
+     * Executes a query once, binding each parameter column as a single array parameter.
+     * Meant for {@code unnest(...)} based multi-row statements, so a whole batch is one statement and one round trip,
+     * and for {@code = ANY($1)} lookups, which keep one prepared statement whatever the number of IDs.
+     *
+     * @param query a {@link JsonObject} holding the SQL string and a {@link io.vertx.core.json.JsonArray} of columns,
+     *              each column being a {@link io.vertx.core.json.JsonArray} of values
+     * @return a {@link Future} containing the result as a {@link JsonObject}, or an error if execution fails
+     */
+    Future<JsonObject> executeColumnarQuery(JsonObject query);
+
+    /**
+     * Executes a single query and serializes the rows straight into a JSON {@link Buffer}.
+     * The buffer holds the same document {@link #executeQuery(JsonObject)} would return,
+     * and can be written to an HTTP response as is. Queries naming a {@code cursor} column and {@code limit},
+     * as built for keyset pages, also get the {@code next_cursor} of the following page.
+     * A parameter given as a {@link io.vertx.core.json.JsonArray} is bound as one typed array, for {@code = ANY($n)} filters.
+     *
+     * @param query a {@link JsonObject} representing the query and parameters
+     * @return a {@link Future} containing the encoded result, or an error if execution fails
+     */
+    Future<Buffer> executeQueryToBuffer(JsonObject query);
 }
@@ -2,30 +2,42 @@ package org.example.service.database;
 
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.Tuple;
 import org.example.utils.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.temporal.Temporal;
 import java.util.ArrayList;
 
 /**
  * Implementation of the {@link DatabaseService} interface.
  * Handles execution of single and batch SQL queries using a shared PostgreSQL client.
+ * Each query runs on the pool of the workload class named by its {@code workload} field, the API pool by default.
  */
 public class DatabaseServiceImpl implements DatabaseService
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseServiceImpl.class);
 
-    // Singleton database client
-    private static final Pool CLIENT = DatabaseClient.getInstance();
-
     // Used to append RETURNING id to insert/update queries
     private static final String RETURNING_ID = " RETURNING id";
 
+    // Envelope of a buffered result, matching the JsonObject returned by executeQuery
+    private static final String RESULT_PREFIX = "{\"" + Constants.SUCCESS + "\":true,\"" + Constants.DATA + "\":[";
+
+    private static final String RESULT_SUFFIX = "]}";
+
+    private static final String NEXT_CURSOR_PREFIX = "],\"" + Constants.NEXT_CURSOR + "\":";
+
+    // Initial buffer capacity per row
+    private static final int ESTIMATED_ROW_SIZE = 128;
+
     /**
      * Executes either a single or batch SQL query based on the query payload.
      *
@@ -39,16 +51,18 @@ public class DatabaseServiceImpl implements DatabaseService
 
         var params = query.getJsonArray(Constants.PARAMS, new JsonArray());
 
+        var workload = query.getString(Constants.WORKLOAD, Constants.WORKLOAD_API);
+
         try
         {
             // Check if the params are a batch (JsonArray of JsonArrays)
             if (!params.isEmpty() && params.getValue(0) instanceof JsonArray)
             {
-                return executeBatchQuery(sql, params);
+                return executeBatchQuery(workload, sql, params);
             }
             else
             {
-                return executeSingleQuery(sql, params);
+                return executeSingleQuery(workload, sql, params);
             }
         }
         catch (Exception exception)
@@ -62,11 +76,12 @@ public class DatabaseServiceImpl implements DatabaseService
     /**
      * Executes a single SQL query with parameters.
      *
+     * @param workload workload class selecting the connection pool
      * @param query the SQL string to execute
      * @param params a JsonArray of parameters to bind to the query
      * @return a Future containing a JsonObject with results or failure
      */
-    private Future<JsonObject> executeSingleQuery(String query, JsonArray params)
+    private Future<JsonObject> executeSingleQuery(String workload, String query, JsonArray params)
     {
         var promise = Promise.<JsonObject>promise();
 
@@ -88,57 +103,35 @@ public class DatabaseServiceImpl implements DatabaseService
                 tuple.addValue(params.getValue(index));
             }
 
+            var sql = query;
+
             // Execute prepared query
-            CLIENT.preparedQuery(query).execute(tuple, asyncResult ->
-            {
-                if (asyncResult.succeeded())
-                {
-                    try
+            DatabaseClient.withConnection(workload, connection -> connection.preparedQuery(sql).execute(tuple))
+                    .onComplete(asyncResult ->
                     {
-                        var response = new JsonArray();
-
-                        if (asyncResult.result().size() > 0)
+                        if (asyncResult.succeeded())
                         {
-                            asyncResult.result().forEach(row ->
+                            try
                             {
-                                var responseObject = new JsonObject();
-
-                                // Convert row to JsonObject
-                                for (var index = 0; index < row.size(); index++)
-                                {
-                                    try
-                                    {
-                                        responseObject.put(row.getColumnName(index),row.getValue(index));
-                                    }
-                                    catch (Exception exception)
-                                    {
-                                        LOGGER.error(exception.getMessage());
-                                    }
-                                }
-
-                                response.add(responseObject);
-                            });
-                        }
-
-                        // Complete promise with results
-                        promise.complete(new JsonObject()
-                                .put(Constants.SUCCESS, Constants.TRUE)
-                                .put(Constants.DATA, response));
-                    }
-                    catch (Exception exception)
-                    {
-                        LOGGER.error("Failed to parse query result: {}", exception.getMessage());
+                                // Complete promise with results
+                                promise.complete(new JsonObject()
+                                        .put(Constants.SUCCESS, Constants.TRUE)
+                                        .put(Constants.DATA, toJsonArray(asyncResult.result())));
+                            }
+                            catch (Exception exception)
+                            {
+                                LOGGER.error("Failed to parse query result: {}", exception.getMessage());
 
-                        promise.fail(exception);
-                    }
-                }
-                else
-                {
-                    LOGGER.error("Query execution failed: {}", asyncResult.cause().getMessage());
+                                promise.fail(exception);
+                            }
+                        }
+                        else
+                        {
+                            LOGGER.error("Query execution failed: {}", asyncResult.cause().getMessage());
 
-                    promise.fail(asyncResult.cause());
-                }
-            });
+                            promise.fail(asyncResult.cause());
+                        }
+                    });
         }
         catch (Exception exception)
         {
@@ -153,11 +146,12 @@ public class DatabaseServiceImpl implements DatabaseService
     /**
      * Executes a batch SQL query with multiple parameter sets.
      *
+     * @param workload workload class selecting the connection pool
      * @param query the SQL string to execute
      * @param params a JsonArray of JsonArrays, each representing one parameter set
      * @return a Future containing a JsonObject with batch result or failure
      */
-    private Future<JsonObject> executeBatchQuery(String query, JsonArray params)
+    private Future<JsonObject> executeBatchQuery(String workload, String query, JsonArray params)
     {
         var promise = Promise.<JsonObject>promise();
 
@@ -180,20 +174,21 @@ public class DatabaseServiceImpl implements DatabaseService
                 batchParams.add(tuple);
             }
 
-            CLIENT.preparedQuery(query).executeBatch(batchParams, asyncResult ->
-            {
-                if (asyncResult.succeeded())
-                {
-                    promise.complete(new JsonObject()
-                            .put(Constants.SUCCESS, Constants.TRUE));
-                }
-                else
-                {
-                    LOGGER.error("Batch query execution failed: {}", asyncResult.cause().getMessage());
+            DatabaseClient.withConnection(workload, connection -> connection.preparedQuery(query).executeBatch(batchParams))
+                    .onComplete(asyncResult ->
+                    {
+                        if (asyncResult.succeeded())
+                        {
+                            promise.complete(new JsonObject()
+                                    .put(Constants.SUCCESS, Constants.TRUE));
+                        }
+                        else
+                        {
+                            LOGGER.error("Batch query execution failed: {}", asyncResult.cause().getMessage());
 
-                    promise.fail(asyncResult.cause());
-                }
-            });
+                            promise.fail(asyncResult.cause());
+                        }
+                    });
         }
         catch (Exception exception)
         {
@@ -204,4 +199,375 @@ public class DatabaseServiceImpl implements DatabaseService
 
         return promise.future();
     }
+
+    /**
+     * Executes a query once with every parameter column bound as a single typed array parameter.
+     *
+     * @param query a JsonObject containing the SQL string and a JsonArray of parameter columns
+     * @return a Future of JsonObject with the returned rows or error
+     */
+    @Override
+    public Future<JsonObject> executeColumnarQuery(JsonObject query)
+    {
+        var promise = Promise.<JsonObject>promise();
+
+        try
+        {
+            var columns = query.getJsonArray(Constants.PARAMS, new JsonArray());
+
+            var tuple = Tuple.tuple();
+
+            var rows = 0;
+
+            // Convert each column to a typed array so it binds as one parameter
+            for (var index = 0; index < columns.size(); index++)
+            {
+                var column = columns.getJsonArray(index);
+
+                rows = Math.max(rows, column.size());
+
+                tuple.addValue(toArray(column));
+            }
+
+            // Nothing to write, skip the round trip
+            if (rows == 0)
+            {
+                return Future.succeededFuture(new JsonObject()
+                        .put(Constants.SUCCESS, Constants.TRUE)
+                        .put(Constants.DATA, new JsonArray()));
+            }
+
+            DatabaseClient.withConnection(query.getString(Constants.WORKLOAD, Constants.WORKLOAD_API),
+                            connection -> connection.preparedQuery(query.getString(Constants.QUERY)).execute(tuple))
+                    .onComplete(asyncResult ->
+                    {
+                        if (asyncResult.succeeded())
+                        {
+                            promise.complete(new JsonObject()
+                                    .put(Constants.SUCCESS, Constants.TRUE)
+                                    .put(Constants.DATA, toJsonArray(asyncResult.result())));
+                        }
+                        else
+                        {
+                            LOGGER.error("Columnar query execution failed: {}", asyncResult.cause().getMessage());
+
+                            promise.fail(asyncResult.cause());
+                        }
+                    });
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Unexpected error during columnar query execution: {}", exception.getMessage());
+
+            promise.fail(exception);
+        }
+
+        return promise.future();
+    }
+
+    /**
+     * Executes a single SQL query and writes the rows directly into a JSON buffer,
+     * without building a JsonObject per row.
+     *
+     * @param query a JsonObject containing the SQL string and parameters
+     * @return a Future of Buffer holding the encoded result or error
+     */
+    @Override
+    public Future<Buffer> executeQueryToBuffer(JsonObject query)
+    {
+        var promise = Promise.<Buffer>promise();
+
+        try
+        {
+            var params = query.getJsonArray(Constants.PARAMS, new JsonArray());
+
+            var tuple = Tuple.tuple();
+
+            for (var index = 0; index < params.size(); index++)
+            {
+                var value = params.getValue(index);
+
+                // Array parameters, e.g. of = ANY($n) filters, bind as one typed array
+                tuple.addValue(value instanceof JsonArray array ? toArray(array) : value);
+            }
+
+            DatabaseClient.withConnection(query.getString(Constants.WORKLOAD, Constants.WORKLOAD_API),
+                            connection -> connection.preparedQuery(query.getString(Constants.QUERY)).execute(tuple))
+                    .onComplete(asyncResult ->
+                    {
+                        if (asyncResult.succeeded())
+                        {
+                            try
+                            {
+                                promise.complete(toBuffer(asyncResult.result(), query.getString(Constants.CURSOR),
+                                        query.getInteger(Constants.LIMIT, 0)));
+                            }
+                            catch (Exception exception)
+                            {
+                                LOGGER.error("Failed to encode query result: {}", exception.getMessage());
+
+                                promise.fail(exception);
+                            }
+                        }
+                        else
+                        {
+                            LOGGER.error("Query execution failed: {}", asyncResult.cause().getMessage());
+
+                            promise.fail(asyncResult.cause());
+                        }
+                    });
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Unexpected error during query execution: {}", exception.getMessage());
+
+            promise.fail(exception);
+        }
+
+        return promise.future();
+    }
+
+    /**
+     * Encodes a result set as {"success":true,"data":[...]} directly into a buffer.
+     * Column names are encoded once per result set, values are appended row by row.
+     * For a keyset page the document also carries "next_cursor", the cursor column of the last row
+     * when the page is full, or null on the last page.
+     *
+     * @param rows         the rows returned by the database
+     * @param cursorColumn cursor column of a paged query, or null
+     * @param limit        page size of a paged query
+     * @return Buffer holding the JSON document
+     */
+    private static Buffer toBuffer(RowSet<Row> rows, String cursorColumn, int limit)
+    {
+        var columnNames = rows.columnsNames();
+
+        var columnPrefixes = new String[columnNames == null ? 0 : columnNames.size()];
+
+        for (var index = 0; index < columnPrefixes.length; index++)
+        {
+            columnPrefixes[index] = (index == 0 ? "{" : ",") + Json.encode(columnNames.get(index)) + ":";
+        }
+
+        var buffer = Buffer.buffer(RESULT_PREFIX.length() + rows.size() * ESTIMATED_ROW_SIZE)
+                .appendString(RESULT_PREFIX);
+
+        var first = Constants.TRUE;
+
+        Object cursor = null;
+
+        for (var row : rows)
+        {
+            if (cursorColumn != null)
+            {
+                cursor = row.getValue(cursorColumn);
+            }
+
+            if (!first)
+            {
+                buffer.appendByte((byte) ',');
+            }
+
+            first = Constants.FALSE;
+
+            for (var index = 0; index < columnPrefixes.length; index++)
+            {
+                buffer.appendString(columnPrefixes[index]);
+
+                appendValue(buffer, row.getValue(index));
+            }
+
+            buffer.appendString(columnPrefixes.length == 0 ? "{}" : "}");
+        }
+
+        if (cursorColumn != null)
+        {
+            buffer.appendString(NEXT_CURSOR_PREFIX);
+
+            appendValue(buffer, rows.size() < limit ? null : cursor);
+
+            return buffer.appendByte((byte) '}');
+        }
+
+        return buffer.appendString(RESULT_SUFFIX);
+    }
+
+    /**
+     * Appends a single column value as JSON.
+     *
+     * @param buffer target buffer
+     * @param value  column value as returned by the pg client
+     */
+    private static void appendValue(Buffer buffer, Object value)
+    {
+        if (value == null)
+        {
+            buffer.appendString("null");
+        }
+        else if (value instanceof Boolean || value instanceof Integer || value instanceof Long || value instanceof Short)
+        {
+            buffer.appendString(value.toString());
+        }
+        else if (value instanceof String string)
+        {
+            buffer.appendString(Json.encode(string));
+        }
+        else if (value instanceof JsonObject jsonObject)
+        {
+            buffer.appendBuffer(jsonObject.toBuffer());
+        }
+        else if (value instanceof JsonArray jsonArray)
+        {
+            buffer.appendBuffer(jsonArray.toBuffer());
+        }
+        else if (value instanceof Temporal)
+        {
+            buffer.appendString(Json.encode(toJsonValue(value)));
+        }
+        else
+        {
+            // Decimals and binary values follow the regular JSON codec
+            buffer.appendString(Json.encode(value));
+        }
+    }
+
+    /**
+     * Converts a result set into a JsonArray of JsonObjects keyed by column name.
+     *
+     * @param rows the rows returned by the database
+     * @return JsonArray with one JsonObject per row
+     */
+    private static JsonArray toJsonArray(RowSet<Row> rows)
+    {
+        var response = new JsonArray();
+
+        if (rows.size() > 0)
+        {
+            rows.forEach(row ->
+            {
+                var responseObject = new JsonObject();
+
+                // Convert row to JsonObject
+                for (var index = 0; index < row.size(); index++)
+                {
+                    try
+                    {
+                        responseObject.put(row.getColumnName(index),toJsonValue(row.getValue(index)));
+                    }
+                    catch (Exception exception)
+                    {
+                        LOGGER.error(exception.getMessage());
+                    }
+                }
+
+                response.add(responseObject);
+            });
+        }
+
+        return response;
+    }
+
+    /**
+     * Maps a column value the JSON codec cannot encode, timestamps are rendered as ISO-8601 strings.
+     *
+     * @param value column value
+     * @return value safe to put into a JsonObject
+     */
+    private static Object toJsonValue(Object value)
+    {
+        return value instanceof Temporal ? value.toString() : value;
+    }
+
+    /**
+     * Converts a column of values into a typed Java array understood by the pg client.
+     * The array type follows the first non-null value, JSON values are sent as encoded text.
+     *
+     * @param column JsonArray holding the values of one column
+     * @return typed array to bind as a single parameter
+     */
+    private static Object toArray(JsonArray column)
+    {
+        Object sample = null;
+
+        for (var index = 0; index < column.size() && sample == null; index++)
+        {
+            sample = column.getValue(index);
+        }
+
+        if (sample instanceof Integer)
+        {
+            var values = new Integer[column.size()];
+
+            for (var index = 0; index < values.length; index++)
+            {
+                var value = column.getNumber(index);
+
+                values[index] = value == null ? null : value.intValue();
+            }
+
+            return values;
+        }
+
+        if (sample instanceof Long)
+        {
+            var values = new Long[column.size()];
+
+            for (var index = 0; index < values.length; index++)
+            {
+                var value = column.getNumber(index);
+
+                values[index] = value == null ? null : value.longValue();
+            }
+
+            return values;
+        }
+
+        if (sample instanceof Number)
+        {
+            var values = new Double[column.size()];
+
+            for (var index = 0; index < values.length; index++)
+            {
+                var value = column.getNumber(index);
+
+                values[index] = value == null ? null : value.doubleValue();
+            }
+
+            return values;
+        }
+
+        if (sample instanceof Boolean)
+        {
+            var values = new Boolean[column.size()];
+
+            for (var index = 0; index < values.length; index++)
+            {
+                values[index] = column.getBoolean(index);
+            }
+
+            return values;
+        }
+
+        var values = new String[column.size()];
+
+        for (var index = 0; index < values.length; index++)
+        {
+            var value = column.getValue(index);
+
+            if (value instanceof JsonObject jsonObject)
+            {
+                values[index] = jsonObject.encode();
+            }
+            else if (value instanceof JsonArray jsonArray)
+            {
+                values[index] = jsonArray.encode();
+            }
+            else
+            {
+                values[index] = value == null ? null : value.toString();
+            }
+        }
+
+        return values;
+    }
 }
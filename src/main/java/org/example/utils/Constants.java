@@ -17,6 +17,17 @@ public class Constants
 
     public static final String DB_CONNECTION_CHECK_QUERY = "SELECT 1";
 
+    //DATABASE WORKLOAD CLASSES, EACH SERVED BY ITS OWN POOL
+    public static final String WORKLOAD = "workload";
+
+    public static final String WORKLOAD_API = "api";
+
+    public static final String WORKLOAD_INGESTION = "ingestion";
+
+    public static final String WORKLOAD_MAINTENANCE = "maintenance";
+
+    public static final String WORKLOAD_READ = "read";
+
     //QUERY BUILDER CONSTANTS
     public static final String OPERATION = "operation";
 
@@ -42,6 +53,16 @@ public class Constants
 
     public static final String PLACEHOLDERS = "placeholders";
 
+    public static final String PREFIXES = "prefixes";
+
+    public static final String LIMIT = "limit";
+
+    public static final String AFTER = "after";
+
+    public static final String CURSOR = "cursor";
+
+    public static final String NEXT_CURSOR = "next_cursor";
+
     //DATABASE DATA PREPARE CONSTANTS
     public static final String DATA = "data";
 
@@ -59,6 +80,40 @@ public class Constants
 
     public static final String DISCOVERY_ADDRESS = "discovery.engine";
 
+    public static final String DISCOVERY_JOB_ADDRESS = "discovery.engine.job";
+
+    // Followed by the job ID, one address per discovery job
+    public static final String DISCOVERY_JOB_EVENTS_ADDRESS = "discovery.job.events.";
+
+    public static final String RESULT_WRITER_ADDRESS = "result.writer.engine";
+
+    public static final String RESULT_WRITER_METRICS_ADDRESS = "result.writer.engine.metrics";
+
+    public static final String DATABASE_METRICS_ADDRESS = "database.metrics";
+
+    public static final String ROW_CHANGES_ADDRESS = "database.row.changes";
+
+
+    //ROW CHANGE NOTIFICATION CONSTANTS
+    public static final String ROW_CHANGE_TABLE = "table";
+
+    public static final String ROW_CHANGE_OPERATION = "op";
+
+    // Published after the change listener reconnected, notifications may have been missed
+    public static final String ROW_CHANGE_RESYNC = "RESYNC";
+
+
+    //METRICS HISTORY CONSTANTS
+    public static final String FROM = "from";
+
+    public static final String TO = "to";
+
+    public static final String METRIC = "metric";
+
+    public static final String RESOLUTION = "resolution";
+
+    public static final String BUCKET = "bucket";
+
 
     //SERVER DATA CONSTANTS
     public static final String MESSAGE_BODY_REQUIRED = "Body is empty";
@@ -73,6 +128,8 @@ public class Constants
 
     public static final String CREDENTIALS = "credentials";
 
+    public static final String CREDENTIAL_VERSION = "credential_version";
+
     public static final String  ID = "id";
 
     public static final String  POLLED_AT = "polled_at";
@@ -120,17 +177,48 @@ public class Constants
 
     public static final String POLLED_RESULTS_TABLE = "polled_results";
 
+    public static final String AVAILABILITY_POLLING_RESULTS_TABLE = "availability_polling_results";
+
+    public static final String METRIC_SAMPLES_TABLE = "metric_samples";
+
     //GO PLUGIN SPAWN EVENTS
     public static final String METRICS = "metrics";
 
     public static final String DISCOVERY = "discovery";
 
+    //DISCOVERY JOB CONSTANTS
+    public static final String JOB_ID = "job_id";
+
+    public static final String TOTAL = "total";
+
+    public static final String PROCESSED = "processed";
+
+    public static final String RESULTS = "results";
+
+    public static final String RESULT = "result";
+
+    public static final String EVENT = "event";
+
+    public static final String INDEX = "index";
+
+    public static final String FORCE = "force";
+
+    public static final String CACHED = "cached";
+
+    public static final String JOB_RUNNING = "RUNNING";
+
+    public static final String JOB_COMPLETED = "COMPLETED";
+
+    public static final String JOB_FAILED = "FAILED";
+
 
     // HTTP Status Codes
     public static final int SC_200 = 200; // OK
 
     public static final int SC_201  = 201; // Created
 
+    public static final int SC_202 = 202; // Accepted
+
     public static final int SC_400 = 400; // Bad Request
 
     public static final int SC_401 = 401; // Unauthorized
@@ -172,6 +260,8 @@ public class Constants
 
     public static final String PLUGIN_PROCESS_TIMEOUT = "plugin.process.timeout";
 
+    public static final String DISCOVERY_SWEEP_MAX_ADDRESSES = "discovery.sweep.max.addresses";
+
     public static final int DEFAULT_PING_PROCESS_TIMEOUT = 1;
 
     public static final int DEFAULT_PLUGIN_PROCESS_TIMEOUT = 5;
@@ -180,6 +270,8 @@ public class Constants
 
     public static final int DEFAULT_PING_PACKET_TIMEOUT_IN_MILLISECONDS = 500;
 
+    public static final long DEFAULT_DISCOVERY_SWEEP_MAX_ADDRESSES = 65_536;
+
 
     //SCHEMA PATHS
     public static final String CREDENTIAL_PROFILES_SCHEMA_PATH = "schemas/credential_profiles.json";
@@ -193,7 +285,8 @@ public class Constants
     public static final boolean FALSE = false;
 
 
-    public static final String FETCH_DISCOVERY_PROFILES_QUERY = "SELECT dp.id, dp.ip, dp.port, cp.credentials, cp.system_type FROM discovery_profiles dp " +
-            "JOIN credential_profiles cp ON dp.credential_profile_id = cp.id WHERE dp.id IN ($1)";
+    public static final String FETCH_DISCOVERY_PROFILES_QUERY = "SELECT dp.id, dp.ip, dp.port, dp.credential_profile_id, cp.version AS credential_version, " +
+            "cp.credentials, cp.system_type FROM discovery_profiles dp " +
+            "JOIN credential_profiles cp ON dp.credential_profile_id = cp.id WHERE dp.id = ANY($1::int[])";
 }
 
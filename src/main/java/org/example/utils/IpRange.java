@@ -0,0 +1,163 @@
+package org.example.utils;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+/**
+ * Discovery target holding a block of IPv4 addresses, given as a CIDR block like "10.0.0.0/24"
+ * or as an inclusive range like "10.0.0.10-10.0.0.50".
+ * Addresses are produced lazily by the iterator, so a large block is never held in memory as a list.
+ * The network and broadcast addresses of CIDR blocks wider than /31 are skipped.
+ */
+public final class IpRange implements Iterable<String>
+{
+    private static final Pattern CIDR = Pattern.compile("^(\\d{1,3}(?:\\.\\d{1,3}){3})/(\\d{1,2})$");
+
+    private static final Pattern RANGE = Pattern.compile("^(\\d{1,3}(?:\\.\\d{1,3}){3})\\s*-\\s*(\\d{1,3}(?:\\.\\d{1,3}){3})$");
+
+    private static final char CIDR_SEPARATOR = '/';
+
+    private static final char RANGE_SEPARATOR = '-';
+
+    private final long first;
+
+    private final long last;
+
+    private IpRange(long first, long last)
+    {
+        this.first = first;
+
+        this.last = last;
+    }
+
+    /**
+     * Tells a block target apart from a single address, without validating it.
+     *
+     * @param target value of a discovery profile ip
+     * @return true if the target is a CIDR block or a range
+     */
+    public static boolean isRange(String target)
+    {
+        return target != null && (target.indexOf(CIDR_SEPARATOR) >= 0 || target.indexOf(RANGE_SEPARATOR) >= 0);
+    }
+
+    /**
+     * Parses a CIDR block or a range.
+     *
+     * @param target       CIDR block or range
+     * @param maxAddresses upper bound on the number of addresses
+     * @return parsed range
+     * @throws IllegalArgumentException if the target is malformed or holds more than maxAddresses addresses
+     */
+    public static IpRange parse(String target, long maxAddresses)
+    {
+        var cidr = CIDR.matcher(target.trim());
+
+        var range = RANGE.matcher(target.trim());
+
+        long first;
+
+        long last;
+
+        if (cidr.matches())
+        {
+            var prefixLength = Integer.parseInt(cidr.group(2));
+
+            if (prefixLength > 32)
+            {
+                throw new IllegalArgumentException("Invalid prefix length: " + target);
+            }
+
+            var mask = prefixLength == 0 ? 0L : (0xFFFFFFFFL << (32 - prefixLength)) & 0xFFFFFFFFL;
+
+            first = toLong(cidr.group(1)) & mask;
+
+            last = first | (~mask & 0xFFFFFFFFL);
+
+            if (prefixLength < 31)
+            {
+                first++;
+
+                last--;
+            }
+        }
+        else if (range.matches())
+        {
+            first = toLong(range.group(1));
+
+            last = toLong(range.group(2));
+
+            if (first > last)
+            {
+                throw new IllegalArgumentException("Range start is after its end: " + target);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException("Invalid CIDR block or range: " + target);
+        }
+
+        if (last - first + 1 > maxAddresses)
+        {
+            throw new IllegalArgumentException("Range " + target + " holds more than " + maxAddresses + " addresses");
+        }
+
+        return new IpRange(first, last);
+    }
+
+    public long size()
+    {
+        return last - first + 1;
+    }
+
+    @Override
+    public Iterator<String> iterator()
+    {
+        return new Iterator<>()
+        {
+            private long next = first;
+
+            @Override
+            public boolean hasNext()
+            {
+                return next <= last;
+            }
+
+            @Override
+            public String next()
+            {
+                if (next > last)
+                {
+                    throw new NoSuchElementException();
+                }
+
+                return toAddress(next++);
+            }
+        };
+    }
+
+    private static long toLong(String address)
+    {
+        var value = 0L;
+
+        for (var octet : address.split("\\."))
+        {
+            var octetValue = Integer.parseInt(octet);
+
+            if (octetValue > 255)
+            {
+                throw new IllegalArgumentException("Invalid IPv4 address: " + address);
+            }
+
+            value = (value << 8) | octetValue;
+        }
+
+        return value;
+    }
+
+    private static String toAddress(long value)
+    {
+        return ((value >> 24) & 0xFF) + "." + ((value >> 16) & 0xFF) + "." + ((value >> 8) & 0xFF) + "." + (value & 0xFF);
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.utils;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the values printed by the plugin's metric commands into numbers.
+ * Values are mostly plain numbers with an optional unit suffix like "12G", uptime is printed as
+ * "up 2 days, 3 hours, 5 minutes" and converted to seconds. Non numeric values like the hostname yield null.
+ */
+public class MetricParser
+{
+    private MetricParser() {}
+
+    private static final String UPTIME = "uptime";
+
+    private static final Pattern LEADING_NUMBER = Pattern.compile("^\\s*(-?\\d+(\\.\\d+)?)");
+
+    private static final Pattern UPTIME_PART = Pattern.compile("(\\d+)\\s+(year|week|day|hour|minute)s?");
+
+    private static final Map<String, Long> UPTIME_UNIT_SECONDS = Map.of(
+            "year", 365L * 24 * 3600,
+            "week", 7L * 24 * 3600,
+            "day", 24L * 3600,
+            "hour", 3600L,
+            "minute", 60L);
+
+    /**
+     * Parses a single metric value.
+     *
+     * @param metric metric name
+     * @param value  value as reported by the plugin
+     * @return numeric value, or null if the value is not numeric
+     */
+    public static Double parse(String metric, Object value)
+    {
+        if (value instanceof Number number)
+        {
+            return number.doubleValue();
+        }
+
+        if (!(value instanceof String text) || text.isBlank())
+        {
+            return null;
+        }
+
+        if (UPTIME.equals(metric))
+        {
+            return parseUptime(text);
+        }
+
+        var matcher = LEADING_NUMBER.matcher(text);
+
+        return matcher.find() ? Double.parseDouble(matcher.group(1)) : null;
+    }
+
+    private static Double parseUptime(String text)
+    {
+        var matcher = UPTIME_PART.matcher(text);
+
+        var seconds = 0L;
+
+        var matched = Constants.FALSE;
+
+        while (matcher.find())
+        {
+            seconds += Long.parseLong(matcher.group(1)) * UPTIME_UNIT_SECONDS.get(matcher.group(2));
+
+            matched = Constants.TRUE;
+        }
+
+        return matched ? (double) seconds : null;
+    }
+}
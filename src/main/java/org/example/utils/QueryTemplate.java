@@ -0,0 +1,245 @@
+package org.example.utils;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled SQL for one query shape of {@link Utils#buildQuery}, identified by operation, table, selected columns,
+ * data keys, condition keys, prefix condition keys and whether the select is paged.
+ * The SQL text is built once per shape, later requests of the same shape only bind values.
+ * Values are bound in the order data keys, condition keys, prefix bounds, then cursor and limit,
+ * matching the positional placeholders.
+ */
+public final class QueryTemplate
+{
+    // Upper bound on cached shapes, shapes beyond it are compiled per request
+    private static final int MAX_TEMPLATES = 1024;
+
+    private static final char KEY_SEPARATOR = '|';
+
+    private static final char NAME_SEPARATOR = ',';
+
+    private static final Map<String, QueryTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final String sql;
+
+    private final String[] dataKeys;
+
+    private final String[] conditionKeys;
+
+    private final String[] prefixKeys;
+
+    private final boolean paged;
+
+    private QueryTemplate(String sql, String[] dataKeys, String[] conditionKeys)
+    {
+        this(sql, dataKeys, conditionKeys, new String[0], Constants.FALSE);
+    }
+
+    private QueryTemplate(String sql, String[] dataKeys, String[] conditionKeys, String[] prefixKeys, boolean paged)
+    {
+        this.sql = sql;
+
+        this.dataKeys = dataKeys;
+
+        this.conditionKeys = conditionKeys;
+
+        this.prefixKeys = prefixKeys;
+
+        this.paged = paged;
+    }
+
+    /**
+     * Returns the compiled template for a query shape, compiling and caching it on first use.
+     *
+     * @param operation  one of the {@code Constants.DB_*} operations
+     * @param table      target table
+     * @param columns    selected columns, empty for all
+     * @param data       column-value pairs for insert and update
+     * @param conditions column-value pairs of the WHERE clause
+     * @param prefixes   column-prefix pairs of the WHERE clause, selects only
+     * @param paged      whether a select is a keyset page ordered by id
+     * @return compiled template, or null for an unsupported operation
+     */
+    public static QueryTemplate of(String operation, String table, JsonArray columns, JsonObject data,
+                                   JsonObject conditions, JsonObject prefixes, boolean paged)
+    {
+        var key = new StringBuilder(64).append(operation).append(KEY_SEPARATOR).append(table).append(KEY_SEPARATOR);
+
+        for (var index = 0; index < columns.size(); index++)
+        {
+            key.append(columns.getValue(index)).append(NAME_SEPARATOR);
+        }
+
+        appendNames(key.append(KEY_SEPARATOR), data.fieldNames());
+
+        appendNames(key.append(KEY_SEPARATOR), conditions.fieldNames());
+
+        appendNames(key.append(KEY_SEPARATOR), prefixes.fieldNames());
+
+        key.append(KEY_SEPARATOR).append(paged);
+
+        var cacheKey = key.toString();
+
+        var template = TEMPLATES.get(cacheKey);
+
+        if (template == null)
+        {
+            template = compile(operation, table, columns, data, conditions, prefixes, paged);
+
+            if (template != null && TEMPLATES.size() < MAX_TEMPLATES)
+            {
+                TEMPLATES.putIfAbsent(cacheKey, template);
+            }
+        }
+
+        return template;
+    }
+
+    /**
+     * Appends the values of a request to the parameter list in placeholder order.
+     *
+     * @param data       column-value pairs for insert and update
+     * @param conditions column-value pairs of the WHERE clause
+     * @param prefixes   column-prefix pairs of the WHERE clause
+     * @param after      keyset cursor, rows with a greater id are returned
+     * @param limit      page size
+     * @param params     JsonArray receiving the values
+     */
+    public void bind(JsonObject data, JsonObject conditions, JsonObject prefixes, Integer after, Integer limit,
+                     JsonArray params)
+    {
+        for (var key : dataKeys)
+        {
+            params.add(data.getValue(key));
+        }
+
+        for (var key : conditionKeys)
+        {
+            params.add(conditions.getValue(key));
+        }
+
+        for (var key : prefixKeys)
+        {
+            var prefix = prefixes.getString(key);
+
+            // Prefix match as a half open range, so a generic plan can still use the index
+            params.add(prefix).add(prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1));
+        }
+
+        if (paged)
+        {
+            params.add(after).add(limit);
+        }
+    }
+
+    public boolean paged()
+    {
+        return paged;
+    }
+
+    public String sql()
+    {
+        return sql;
+    }
+
+    private static QueryTemplate compile(String operation, String table, JsonArray columns, JsonObject data,
+                                         JsonObject conditions, JsonObject prefixes, boolean paged)
+    {
+        var dataKeys = data.fieldNames().toArray(new String[0]);
+
+        var conditionKeys = conditions.fieldNames().toArray(new String[0]);
+
+        var sql = new StringBuilder();
+
+        switch (operation)
+        {
+            case Constants.DB_INSERT:
+                // INSERT INTO table (col1, col2) VALUES ($1, $2)
+                sql.append("INSERT INTO ").append(table)
+                        .append(" (").append(String.join(Constants.COMMA_SEPARATOR, dataKeys)).append(")")
+                        .append(" VALUES (").append(Utils.buildPlaceholders(dataKeys.length)).append(")");
+
+                return new QueryTemplate(sql.toString(), dataKeys, new String[0]);
+
+            case Constants.DB_SELECT:
+                // SELECT col1, col2 FROM table WHERE condition1 = $1 AND ... [AND id > $n ORDER BY id LIMIT $m]
+                sql.append("SELECT ").append(columns.isEmpty()
+                                ? "*"
+                                : String.join(", ", columns.stream().map(Object::toString).toList()))
+                        .append(" FROM ").append(table);
+
+                appendWhereClause(sql, conditionKeys, 1);
+
+                var prefixKeys = prefixes.fieldNames().toArray(new String[0]);
+
+                var paramIndex = conditionKeys.length + 1;
+
+                for (var prefixKey : prefixKeys)
+                {
+                    // Compared byte wise to match the C collation indexes on prefix searchable columns
+                    sql.append(paramIndex == 1 ? " WHERE " : " AND ")
+                            .append(prefixKey).append(" COLLATE \"C\" >= $").append(paramIndex)
+                            .append(" AND ").append(prefixKey).append(" COLLATE \"C\" < $").append(paramIndex + 1);
+
+                    paramIndex += 2;
+                }
+
+                if (paged)
+                {
+                    sql.append(paramIndex == 1 ? " WHERE " : " AND ")
+                            .append(Constants.ID).append(" > $").append(paramIndex)
+                            .append(" ORDER BY ").append(Constants.ID).append(" LIMIT $").append(paramIndex + 1);
+                }
+
+                return new QueryTemplate(sql.toString(), new String[0], conditionKeys, prefixKeys, paged);
+
+            case Constants.DB_UPDATE:
+                // UPDATE table SET col1 = $1, col2 = $2 WHERE condition1 = $3 AND ...
+                sql.append("UPDATE ").append(table).append(" SET ");
+
+                for (var index = 0; index < dataKeys.length; index++)
+                {
+                    if (index > 0) sql.append(Constants.COMMA_SEPARATOR);
+
+                    sql.append(dataKeys[index]).append(" = $").append(index + 1);
+                }
+
+                appendWhereClause(sql, conditionKeys, dataKeys.length + 1);
+
+                return new QueryTemplate(sql.toString(), dataKeys, conditionKeys);
+
+            case Constants.DB_DELETE:
+                // DELETE FROM table WHERE condition1 = $1 AND ...
+                sql.append("DELETE FROM ").append(table);
+
+                appendWhereClause(sql, conditionKeys, 1);
+
+                return new QueryTemplate(sql.toString(), new String[0], conditionKeys);
+
+            default:
+                return null;
+        }
+    }
+
+    private static void appendWhereClause(StringBuilder sql, String[] conditionKeys, int paramStartIndex)
+    {
+        for (var index = 0; index < conditionKeys.length; index++)
+        {
+            sql.append(index == 0 ? " WHERE " : " AND ")
+                    .append(conditionKeys[index]).append(" = $").append(paramStartIndex + index);
+        }
+    }
+
+    private static void appendNames(StringBuilder key, Set<String> names)
+    {
+        for (var name : names)
+        {
+            key.append(name).append(NAME_SEPARATOR);
+        }
+    }
+}
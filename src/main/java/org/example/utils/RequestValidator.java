@@ -91,7 +91,9 @@ public class RequestValidator
 
             if (Boolean.TRUE.equals(result.getValid()))
             {
-                return Constants.EMPTY_STRING;
+                return Constants.DISCOVERY_PROFILES_TABLE.equals(schema)
+                        ? validateRange(request.getString(Constants.IP))
+                        : Constants.EMPTY_STRING;
             }
             else
             {
@@ -119,4 +121,30 @@ public class RequestValidator
             return String.format(EXCEPTION_FORMATION, VALIDATION_FAILED, exception.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks a CIDR block or range target beyond what the schema can express, its bounds and its size against the sweep limit,
+     * so a profile that discovery would reject is refused when it is saved.
+     * @param target ip of a discovery profile
+     * @return String containing the validation error or an empty string if valid
+     */
+    private static String validateRange(String target)
+    {
+        if (!IpRange.isRange(target))
+        {
+            return Constants.EMPTY_STRING;
+        }
+
+        try
+        {
+            IpRange.parse(target, MotaDataConfigUtil.getConfig().getLong(Constants.DISCOVERY_SWEEP_MAX_ADDRESSES,
+                    Constants.DEFAULT_DISCOVERY_SWEEP_MAX_ADDRESSES));
+
+            return Constants.EMPTY_STRING;
+        }
+        catch (IllegalArgumentException exception)
+        {
+            return exception.getMessage();
+        }
+    }
+}
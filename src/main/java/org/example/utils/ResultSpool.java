@@ -0,0 +1,387 @@
+package org.example.utils;
+
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only spool for result batches that could not be written to the database.
+ * Batches are stored in memory-mapped segment files as checksummed records and read back in append order.
+ * The read position is persisted in a checkpoint file, fully consumed segments are deleted.
+ * A record failing its checksum is logged and skipped. The spool is bounded in size, once full new batches are rejected
+ * so the oldest unreplayed data is kept. Batches the database rejects for good are moved to a dead letter file.
+ * <p>
+ * Record layout: [int payload length][long CRC32 of payload][payload bytes], a zero length marks the end of a segment.
+ */
+public class ResultSpool
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultSpool.class);
+
+    // Config keys
+    private static final String SPOOL_DIRECTORY = "result.spool.directory";
+    private static final String SEGMENT_SIZE = "result.spool.segment.size.in.bytes";
+    private static final String MAX_SIZE = "result.spool.max.size.in.bytes";
+
+    // Defaults
+    private static final String DEFAULT_SPOOL_DIRECTORY = "spool";
+    private static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SEGMENT_NAME_FORMAT = "%020d" + SEGMENT_SUFFIX;
+    private static final String CHECKPOINT_FILE = "spool.checkpoint";
+    private static final String CHECKPOINT_TEMP_FILE = "spool.checkpoint.tmp";
+    private static final String DEAD_LETTER_FILE = "spool.deadletter";
+
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    // Returned by readRecord for a record whose checksum does not match, its length field is still used to skip it
+    private static final byte[] CORRUPT_RECORD = new byte[0];
+
+    private static ResultSpool instance;
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final long maxSize;
+
+    // Write side
+    private long writeSegmentId;
+
+    private MappedByteBuffer writeBuffer;
+
+    // Read side
+    private long readSegmentId;
+
+    private int readOffset;
+
+    private MappedByteBuffer readBuffer;
+
+    // Size of the record returned by the last peek, 0 if none is pending
+    private int pendingRecordSize;
+
+    private ResultSpool(Path directory, int segmentSize, long maxSize) throws IOException
+    {
+        this.directory = directory;
+
+        this.segmentSize = segmentSize;
+
+        this.maxSize = maxSize;
+
+        Files.createDirectories(directory);
+
+        recover();
+    }
+
+    /**
+     * Lazily opens and returns the shared spool.
+     *
+     * @return shared {@link ResultSpool} instance
+     * @throws IOException if the spool directory or its segments cannot be opened
+     */
+    public static synchronized ResultSpool getInstance() throws IOException
+    {
+        if (instance == null)
+        {
+            instance = new ResultSpool(Paths.get(MotaDataConfigUtil.getConfig()
+                    .getString(SPOOL_DIRECTORY, DEFAULT_SPOOL_DIRECTORY)),
+                    MotaDataConfigUtil.getConfig().getInteger(SEGMENT_SIZE, DEFAULT_SEGMENT_SIZE),
+                    MotaDataConfigUtil.getConfig().getLong(MAX_SIZE, DEFAULT_MAX_SIZE));
+        }
+
+        return instance;
+    }
+
+    /**
+     * Appends a batch to the end of the spool and forces it to disk.
+     *
+     * @param batch JsonObject to store
+     * @throws IOException if a new segment cannot be created, or the spool reached its maximum size
+     */
+    public synchronized void append(JsonObject batch) throws IOException
+    {
+        var payload = batch.encode().getBytes(StandardCharsets.UTF_8);
+
+        var recordSize = HEADER_SIZE + payload.length;
+
+        // Keep room for the end marker, roll over to a new segment when full
+        if (writeBuffer.remaining() < recordSize + Integer.BYTES)
+        {
+            // Drop newest policy, the unreplayed segments plus the new one must fit in the bound
+            if ((writeSegmentId - readSegmentId + 2) * segmentSize > maxSize)
+            {
+                throw new IOException("Result spool is full, " + (writeSegmentId - readSegmentId + 1)
+                        + " segments pending replay");
+            }
+
+            writeBuffer.force();
+
+            writeSegmentId++;
+
+            writeBuffer = map(writeSegmentId, Math.max(segmentSize, recordSize + Integer.BYTES));
+        }
+
+        var checksum = new CRC32();
+
+        checksum.update(payload);
+
+        writeBuffer.putInt(payload.length).putLong(checksum.getValue()).put(payload);
+
+        writeBuffer.force();
+    }
+
+    /**
+     * Returns the oldest unread batch without consuming it. Call {@link #commit()} once it is safely written.
+     *
+     * @return oldest unread batch, or null if the spool is empty
+     * @throws IOException if a segment cannot be opened
+     */
+    public synchronized JsonObject peek() throws IOException
+    {
+        while (true)
+        {
+            var record = readRecord(readBuffer, readOffset);
+
+            if (record == CORRUPT_RECORD)
+            {
+                LOGGER.error("Skipping corrupt record in spool segment {} at offset {}", readSegmentId, readOffset);
+
+                readOffset += HEADER_SIZE + readBuffer.getInt(readOffset);
+
+                saveCheckpoint();
+
+                continue;
+            }
+
+            if (record != null)
+            {
+                pendingRecordSize = HEADER_SIZE + record.length;
+
+                return new JsonObject(new String(record, StandardCharsets.UTF_8));
+            }
+
+            // End of the segment currently being written means the spool is drained
+            if (readSegmentId >= writeSegmentId)
+            {
+                return null;
+            }
+
+            // Segment fully consumed, move on and drop it
+            var consumedSegmentId = readSegmentId;
+
+            readSegmentId++;
+
+            readOffset = 0;
+
+            readBuffer = map(readSegmentId, segmentSize);
+
+            saveCheckpoint();
+
+            Files.deleteIfExists(segmentPath(consumedSegmentId));
+        }
+    }
+
+    /**
+     * Marks the batch returned by the last {@link #peek()} as consumed and persists the read position.
+     *
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public synchronized void commit() throws IOException
+    {
+        if (pendingRecordSize > 0)
+        {
+            readOffset += pendingRecordSize;
+
+            pendingRecordSize = 0;
+
+            saveCheckpoint();
+        }
+    }
+
+    /**
+     * Appends a batch the database rejected for good to the dead letter file, one JSON document per line,
+     * so it can be inspected and fixed by hand instead of blocking the replay.
+     *
+     * @param batch  rejected batch
+     * @param reason error the database failed it with
+     * @throws IOException if the dead letter file cannot be written
+     */
+    public synchronized void deadLetter(JsonObject batch, String reason) throws IOException
+    {
+        Files.writeString(directory.resolve(DEAD_LETTER_FILE), new JsonObject()
+                        .put(Constants.ERROR, reason)
+                        .put(Constants.DATA, batch).encode() + System.lineSeparator(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Checks whether there is anything left to replay.
+     *
+     * @return true if all appended batches were consumed
+     */
+    public synchronized boolean isEmpty()
+    {
+        return readSegmentId == writeSegmentId && readOffset >= writeBuffer.position();
+    }
+
+    /**
+     * Restores read and write positions from the segment files and the checkpoint.
+     * Records failing their checksum are stepped over by their length, a torn record at the tail of the last segment
+     * is skipped the same way by the reader.
+     */
+    private void recover() throws IOException
+    {
+        var segmentIds = listSegments();
+
+        if (segmentIds.isEmpty())
+        {
+            segmentIds.add(0L);
+        }
+
+        writeSegmentId = segmentIds.get(segmentIds.size() - 1);
+
+        writeBuffer = map(writeSegmentId, segmentSize);
+
+        var offset = 0;
+
+        byte[] record;
+
+        while ((record = readRecord(writeBuffer, offset)) != null)
+        {
+            offset += HEADER_SIZE + writeBuffer.getInt(offset);
+        }
+
+        writeBuffer.position(offset);
+
+        // Clear any torn record so the scan stops here next time
+        if (writeBuffer.remaining() >= Integer.BYTES)
+        {
+            writeBuffer.putInt(offset, 0);
+        }
+
+        readSegmentId = segmentIds.get(0);
+
+        readOffset = 0;
+
+        var checkpoint = directory.resolve(CHECKPOINT_FILE);
+
+        if (Files.exists(checkpoint))
+        {
+            var position = Files.readString(checkpoint).trim().split(Constants.SPACE_SEPARATOR);
+
+            var checkpointSegmentId = Long.parseLong(position[0]);
+
+            if (checkpointSegmentId >= readSegmentId && checkpointSegmentId <= writeSegmentId)
+            {
+                readSegmentId = checkpointSegmentId;
+
+                readOffset = Integer.parseInt(position[1]);
+            }
+        }
+
+        readBuffer = map(readSegmentId, segmentSize);
+
+        if (!isEmpty())
+        {
+            LOGGER.warn("Result spool holds unreplayed batches starting at segment {} offset {}", readSegmentId, readOffset);
+        }
+    }
+
+    /**
+     * Reads the record stored at the given offset.
+     *
+     * @return payload bytes, {@link #CORRUPT_RECORD} on a checksum mismatch, or null at the end of the segment
+     */
+    private byte[] readRecord(ByteBuffer buffer, int offset)
+    {
+        if (offset + HEADER_SIZE > buffer.capacity())
+        {
+            return null;
+        }
+
+        var length = buffer.getInt(offset);
+
+        if (length <= 0 || offset + HEADER_SIZE + length > buffer.capacity())
+        {
+            return null;
+        }
+
+        var expectedChecksum = buffer.getLong(offset + Integer.BYTES);
+
+        var payload = new byte[length];
+
+        buffer.get(offset + HEADER_SIZE, payload);
+
+        var checksum = new CRC32();
+
+        checksum.update(payload);
+
+        if (checksum.getValue() != expectedChecksum)
+        {
+            LOGGER.error("Checksum mismatch in spool segment at offset {}", offset);
+
+            return CORRUPT_RECORD;
+        }
+
+        return payload;
+    }
+
+    /**
+     * Maps a segment file, creating it with the given size if it does not exist yet.
+     * Mappings of the same file share the page cache, so the reader sees appended records right away.
+     */
+    private MappedByteBuffer map(long segmentId, int size) throws IOException
+    {
+        try (var channel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        }
+    }
+
+    private void saveCheckpoint() throws IOException
+    {
+        var temp = directory.resolve(CHECKPOINT_TEMP_FILE);
+
+        Files.writeString(temp, readSegmentId + Constants.SPACE_SEPARATOR + readOffset);
+
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<Long> listSegments() throws IOException
+    {
+        var segmentIds = new ArrayList<Long>();
+
+        try (var files = Files.list(directory))
+        {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> segmentIds.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+        }
+
+        segmentIds.sort(Long::compare);
+
+        return segmentIds;
+    }
+
+    private Path segmentPath(long segmentId)
+    {
+        return directory.resolve(String.format(SEGMENT_NAME_FORMAT, segmentId));
+    }
+}
@@ -3,13 +3,19 @@ package org.example.utils;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 /**
  * Utility class for various operations including:
@@ -34,7 +40,21 @@ public class Utils
 
     private static final int DEFAULT_PACKET_RECEIVE = 0;
 
-    private static final String SECURE_COMPRESSED_FILE_PATH = "devices.snappy.aes.b64.txt";
+    // Each plugin run writes its own input file, so concurrent runs do not overwrite each other's devices
+    private static final String SECURE_COMPRESSED_FILE_PREFIX = "devices.";
+
+    private static final String SECURE_COMPRESSED_FILE_SUFFIX = ".snappy.aes.b64.txt";
+
+    // Marks a per reply line of fping, summary lines hold the loss statistics instead
+    private static final String PING_REPLY_MARKER = " bytes, ";
+
+    private static final String PING_SUMMARY_MARKER = "xmt/rcv/%loss";
+
+    // SQLState classes of data exceptions and integrity constraint violations, a retry fails the same way
+    private static final Set<String> PERMANENT_SQL_STATE_CLASSES = Set.of("22", "23");
+
+    // Errors passed through the service proxy only keep the message, which ends with the SQLState
+    private static final Pattern SQL_STATE_SUFFIX = Pattern.compile("\\(([0-9A-Z]{5})\\)$");
 
     private static final String PING_PACKET_COUNT = String.valueOf(MotaDataConfigUtil.getConfig().getInteger(Constants.PING_PACKET_COUNT
             ,Constants.DEFAULT_PING_PACKET_COUNT));
@@ -84,6 +104,19 @@ public class Utils
      * @return A JsonArray containing the devices id and their status (UP/DOWN).
      */
     public static JsonArray ping(JsonArray devices)
+    {
+        return ping(devices, null);
+    }
+
+    /**
+     * Runs the fping command to check the availability of devices, reporting each device as soon as its first
+     * reply arrives when a reply handler is given, so later stages can start before the slowest device answered.
+     *
+     * @param devices      A JsonArray containing the devices with their IPs.
+     * @param replyHandler Called on the calling thread with the ID of each device on its first reply, or null.
+     * @return A JsonArray containing the devices id and their status (UP/DOWN).
+     */
+    public static JsonArray ping(JsonArray devices, Consumer<Integer> replyHandler)
     {
         Process process = null;
 
@@ -108,16 +141,27 @@ public class Utils
             command.add("fping");
             command.add("-c");
             command.add(PING_PACKET_COUNT);
-            command.add("-q");
+
+            // Per reply lines are only printed without -q
+            if (replyHandler == null)
+            {
+                command.add("-q");
+            }
+
             command.add("-t");
             command.add(PING_PACKET_TIMEOUT);
             command.add("-p");
             command.add("0");
             command.addAll(ipList);
 
-            process = new ProcessBuilder(command).start();
+            // Replies are printed on stdout and the summary on stderr, merged they are read as one stream
+            process = new ProcessBuilder(command).redirectErrorStream(replyHandler != null).start();
+
+            var repliedIps = new HashSet<String>();
 
-            try (var reader = new BufferedReader(new InputStreamReader(process.getErrorStream())))
+            try (var reader = new BufferedReader(new InputStreamReader(replyHandler == null
+                    ? process.getErrorStream()
+                    : process.getInputStream())))
             {
                 var line = "";
 
@@ -125,7 +169,22 @@ public class Utils
                 {
                     var ip = line.split(Constants.COLON_SEPARATOR)[0].trim();
 
-                    devices.add(parsePingResult(line.trim(),ipToDeviceIdMap.get(ip)));
+                    if (!ipToDeviceIdMap.containsKey(ip))
+                    {
+                        continue;
+                    }
+
+                    if (line.contains(PING_REPLY_MARKER))
+                    {
+                        if (repliedIps.add(ip))
+                        {
+                            replyHandler.accept(ipToDeviceIdMap.get(ip));
+                        }
+                    }
+                    else if (replyHandler == null || line.contains(PING_SUMMARY_MARKER))
+                    {
+                        devices.add(parsePingResult(line.trim(),ipToDeviceIdMap.get(ip)));
+                    }
                 }
             }
 
@@ -206,14 +265,17 @@ public class Utils
     {
         var result = new JsonArray();
 
-        var file = new File(SECURE_COMPRESSED_FILE_PATH);
-
-        var filePath = file.getAbsolutePath();
+        Path file = null;
 
         Process process = null;
 
         try
         {
+            file = Files.createTempFile(Path.of(Constants.EMPTY_STRING).toAbsolutePath(),
+                    SECURE_COMPRESSED_FILE_PREFIX, SECURE_COMPRESSED_FILE_SUFFIX);
+
+            var filePath = file.toString();
+
             // Encrypt and compress the devices' JSON data, and write it to the file
             SecureCompressor.writeIntoFile(devices,filePath);
 
@@ -260,7 +322,10 @@ public class Utils
                     process.destroyForcibly();
                 }
 
-                Files.deleteIfExists(file.toPath());
+                if (file != null)
+                {
+                    Files.deleteIfExists(file);
+                }
             }
             catch (Exception exception)
             {
@@ -293,6 +358,8 @@ public class Utils
     /**
      * Builds an SQL query dynamically based on the input JsonObject.
      * Supports INSERT, SELECT, UPDATE, DELETE operations with condition and parameter binding support.
+     * A SELECT may also carry prefix conditions and a keyset page, given by a limit and an optional cursor
+     * on id, in which case the result names the cursor column and limit for the next page.
      *
      * @param input  The JSON input containing operation type, table name, data, conditions, and optional columns.
      * @param query  A StringBuilder object to hold the generated SQL query string.
@@ -315,91 +382,40 @@ public class Utils
             // Optional array of columns for SELECT
             var columns = input.getJsonArray(Constants.COLUMNS, new JsonArray());
 
-            // Switch based on the requested SQL operation
-            switch (input.getString(Constants.OPERATION))
-            {
-                case Constants.DB_INSERT:
-                    // INSERT INTO table (col1, col2) VALUES ($1, $2)
-                    var keys = data.fieldNames();
-
-                    var columnsStr = String.join(Constants.COMMA_SEPARATOR, keys);
-
-                    var placeholders = Utils.buildPlaceholders(keys.size());
-
-                    for (var key : keys)
-                    {
-                        params.add(data.getValue(key));
-                    }
-
-                    query.append("INSERT INTO ").append(table)
-                            .append(" (").append(columnsStr).append(")")
-                            .append(" VALUES (").append(placeholders).append(")");
-
-                    break;
-
-                case Constants.DB_SELECT:
-                    // SELECT col1, col2 FROM table WHERE condition1 = $1 AND ...
-                    var columnStr = (columns != null && !columns.isEmpty())
-                            ? String.join(", ", columns.stream().map(Object::toString).toList())
-                            : "*";
-
-                    query.append("SELECT ").append(columnStr).append(" FROM ").append(table);
-
-                    if (!conditions.isEmpty())
-                    {
-                        var whereClause = Utils.buildWhereClause(conditions, params, 1);
-
-                        query.append(Constants.SPACE_SEPARATOR).append(whereClause);
-                    }
-                    break;
-
-                case Constants.DB_UPDATE:
-                    // UPDATE table SET col1 = $1, col2 = $2 WHERE condition1 = $3 AND ...
-                    query.append("UPDATE ").append(table).append(" SET ");
-
-                    var index = 1;
-
-                    for (var key : data.fieldNames())
-                    {
-                        query.append(key).append(" = $").append(index++);
-
-                        if (index <= data.size()) query.append(Constants.COMMA_SEPARATOR);
-
-                        params.add(data.getValue(key));
-                    }
-
-                    if (!conditions.isEmpty())
-                    {
-                        var whereClause = Utils.buildWhereClause(conditions, params, index);
+            // Optional JSON object with column-prefix pairs for SELECT
+            var prefixes = input.getJsonObject(Constants.PREFIXES, new JsonObject());
 
-                        query.append(Constants.SPACE_SEPARATOR).append(whereClause);
-                    }
-                    break;
+            // Optional page size, a paged SELECT returns rows after the cursor ordered by id
+            var limit = input.getInteger(Constants.LIMIT);
 
-                case Constants.DB_DELETE:
-                    // DELETE FROM table WHERE condition1 = $1 AND ...
-                    query.append("DELETE FROM ").append(table);
+            // SQL text is compiled once per query shape, only the values are bound per request
+            var template = QueryTemplate.of(input.getString(Constants.OPERATION), table, columns, data, conditions,
+                    prefixes, limit != null);
 
-                    if (!conditions.isEmpty())
-                    {
-                        var whereClause = Utils.buildWhereClause(conditions, params, 1);
+            if (template == null)
+            {
+                // Invalid operation provided
+                return new JsonObject()
+                        .put(Constants.SUCCESS, Constants.FALSE)
+                        .put(Constants.ERROR, "Invalid operation: " + input.getString(Constants.OPERATION));
+            }
 
-                        query.append(Constants.SPACE_SEPARATOR).append(whereClause);
-                    }
-                    break;
+            template.bind(data, conditions, prefixes, input.getInteger(Constants.AFTER, 0), limit, params);
 
-                default:
-                    // Invalid operation provided
-                    return new JsonObject()
-                            .put(Constants.SUCCESS, Constants.FALSE)
-                            .put(Constants.ERROR, "Invalid operation: " + input.getString(Constants.OPERATION));
-            }
+            query.append(template.sql());
 
             // Return success with the generated SQL query and bound parameters
-            return new JsonObject()
+            var result = new JsonObject()
                     .put(Constants.SUCCESS, Constants.TRUE)
                     .put(Constants.QUERY, query.toString())
                     .put(Constants.PARAMS, params);
+
+            if (template.paged())
+            {
+                result.put(Constants.CURSOR, Constants.ID).put(Constants.LIMIT, limit);
+            }
+
+            return result;
         }
         catch (Exception exception)
         {
@@ -413,55 +429,59 @@ public class Utils
     }
 
     /**
-     * Builds a WHERE clause with positional parameter binding.
+     * Builds a comma-separated list of positional placeholders like "$1, $2, $3".
      *
-     * @param conditions       JSON object containing column-value pairs for the WHERE clause.
-     * @param params           JSON array to collect parameter values in positional order.
-     * @param paramStartIndex  Index at which to start positional parameters (e.g., $1, $2).
-     * @return WHERE clause string (e.g., "WHERE col1 = $1 AND col2 = $2")
+     * @param count Number of placeholders to generate.
+     * @return String of placeholders for use in INSERT/UPDATE operations.
      */
-    public static String buildWhereClause(JsonObject conditions, JsonArray params, int paramStartIndex)
+    public static String buildPlaceholders(int count)
     {
-        var clause = new StringBuilder("WHERE ");
-
-        var i = 0;
+        var placeHolders = new StringBuilder();
 
-        for (var key : conditions.fieldNames())
+        for (var index = 1; index <= count; index++)
         {
-            if (i > 0) clause.append(" AND ");
-
-            clause.append(key).append(" = $").append(paramStartIndex + i);
-
-            params.add(conditions.getValue(key));
+            placeHolders.append("$").append(index);
 
-            i++;
+            if (index < count) placeHolders.append(Constants.COMMA_SEPARATOR);
         }
 
-        return clause.toString();
+        return placeHolders.toString();
     }
 
     /**
-     * Builds a comma-separated list of positional placeholders like "$1, $2, $3".
+     * Extracts the SQLState of a failed database call.
      *
-     * @param count Number of placeholders to generate.
-     * @return String of placeholders for use in INSERT/UPDATE operations.
+     * @param error cause of the failure, raised locally or received through the service proxy
+     * @return five character SQLState, or null if the failure did not come from the database
      */
-    public static String buildPlaceholders(int count)
+    public static String getSqlState(Throwable error)
     {
-        var placeHolders = new StringBuilder();
-
-        for (var index = 1; index <= count; index++)
+        if (error instanceof PgException pgException)
         {
-            placeHolders.append("$").append(index);
+            return pgException.getSqlState();
+        }
 
-            if (index < count) placeHolders.append(Constants.COMMA_SEPARATOR);
+        if (error == null || error.getMessage() == null)
+        {
+            return null;
         }
 
-        return placeHolders.toString();
+        var matcher = SQL_STATE_SUFFIX.matcher(error.getMessage().trim());
+
+        return matcher.find() ? matcher.group(1) : null;
     }
 
-    public static String buildJoinQuery(String baseQuery, int placeHolders)
+    /**
+     * Tells failures the database rejects for the data itself, like constraint violations or bad casts,
+     * apart from connection errors. Replaying such a statement can never succeed.
+     *
+     * @param error cause of the failure
+     * @return true if the failure is a data exception or an integrity constraint violation
+     */
+    public static boolean isPermanentFailure(Throwable error)
     {
-        return baseQuery.replace("$1" , Utils.buildPlaceholders(placeHolders));
+        var sqlState = getSqlState(error);
+
+        return sqlState != null && PERMANENT_SQL_STATE_CLASSES.contains(sqlState.substring(0, 2));
     }
-}
\ No newline at end of file
+}
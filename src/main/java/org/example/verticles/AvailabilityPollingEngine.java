@@ -7,39 +7,33 @@ import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.example.cache.AvailabilityCacheEngine;
-import org.example.service.database.Database;
-import org.example.service.database.DatabaseService;
+import org.example.cache.DeviceInventoryCache;
 import org.example.utils.Constants;
 import org.example.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 
 /**
- * Verticle for polling device availability. It fetches device information from the database,
+ * Verticle for polling device availability. It resolves device information from the device inventory cache,
  * runs a ping test on the devices, and updates their availability status in a cache.
  */
 public class AvailabilityPollingEngine extends AbstractVerticle
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(AvailabilityPollingEngine.class);
 
-    private static final DatabaseService DATABASE_SERVICE = DatabaseService.createProxy(Database.DB_SERVICE_ADDRESS);
-
     // SQL queries
-    private static final String FETCH_ALL_DEVICES_ID_QUERY = "SELECT id FROM provision WHERE status = true;";
-
-    private static final String FETCH_DEVICE_IP_QUERY = "SELECT ip, id from provision WHERE id IN ($1)";
-
     private static final String INSERT_PING_RESULTS_QUERY = """
             INSERT INTO availability_polling_results (provision_id, packets_send, packets_received, packet_loss_percentage,timestamp)
-            VALUES ($1, $2, $3, $4,$5)
+            SELECT provision_id, packets_send, packets_received, packet_loss_percentage, polled_at::timestamptz
+            FROM unnest($1::int[], $2::int[], $3::int[], $4::int[], $5::text[])
+            AS t(provision_id, packets_send, packets_received, packet_loss_percentage, polled_at)
             """;
 
     private MessageConsumer<JsonArray> localConsumer;
     /**
-     * Start method for the verticle. Initializes the polling engine by fetching device data from the database
+     * Start method for the verticle. Initializes the polling engine by loading the device inventory cache
      * and setting the initial status for each device.
      *
      * @param startPromise A promise to indicate when the verticle is started.
@@ -49,38 +43,27 @@ public class AvailabilityPollingEngine extends AbstractVerticle
     {
         try
         {
-            // Execute query to fetch all devices from the provisioning_jobs table
-            DATABASE_SERVICE.executeQuery(new JsonObject().put(Constants.QUERY ,FETCH_ALL_DEVICES_ID_QUERY))
-                    .onSuccess(result ->
+            // Load the device inventory once, polling cycles resolve devices from it
+            DeviceInventoryCache.load()
+                    .onSuccess(deviceData ->
                     {
-                        // If the query was successful, fetch the devices data
-                        if(Boolean.TRUE.equals(result.getBoolean(Constants.SUCCESS)))
+                        // Initialize the status of every provisioned device to "DOWN"
+                        for(var index = 0; index < deviceData.size(); index++)
                         {
-                            var deviceData = result.getJsonArray(Constants.DATA);
-
-                            // If devices are found, initialize their status to "DOWN"
-                            if (!deviceData.isEmpty())
+                            try
                             {
-                                for(var index = 0; index < deviceData.size(); index++)
-                                {
-                                    try
-                                    {
-                                        // Set the device status to "DOWN" initially in the cache
-                                        AvailabilityCacheEngine.setDeviceStatus(deviceData
-                                                .getJsonObject(index).getInteger(Constants.ID),Constants.DOWN);
-                                    }
-                                    catch (Exception exception)
-                                    {
-                                        // Log any exception during device status setting
-                                        LOGGER.error("Error in setting device status: {}", exception.getMessage());
-
-                                        startPromise.fail(exception.getMessage());
-                                    }
-                                }
+                                // Set the device status to "DOWN" initially in the cache
+                                AvailabilityCacheEngine.setDeviceStatus(deviceData
+                                        .getJsonObject(index).getInteger(Constants.ID),Constants.DOWN);
+                            }
+                            catch (Exception exception)
+                            {
+                                // Log any exception during device status setting
+                                LOGGER.error("Error in setting device status: {}", exception.getMessage());
                             }
-                            // Complete the promise once initialization is done
-                            startPromise.complete();
                         }
+                        // Complete the promise once initialization is done
+                        startPromise.complete();
                     })
                     .onFailure( error ->
                     {
@@ -103,7 +86,7 @@ public class AvailabilityPollingEngine extends AbstractVerticle
 
     /**
      * Handle the availability polling request. This method processes the device IDs provided in the message,
-     * fetches their IPs from the database, runs the fping utility to check their availability, and updates
+     * resolves their IPs from the device inventory cache, runs the fping utility to check their availability, and updates
      * the device status in the cache.
      *
      * @param message The message containing the device IDs for polling.
@@ -115,57 +98,50 @@ public class AvailabilityPollingEngine extends AbstractVerticle
             // Get the device IDs from the message body
             var deviceIds = message.body();
 
-            // Execute the query to fetch device information
-            DATABASE_SERVICE.executeQuery(new JsonObject()
-                    .put(Constants.QUERY, Utils.buildJoinQuery(FETCH_DEVICE_IP_QUERY, deviceIds.size()))
-                    .put(Constants.PARAMS, deviceIds)).onSuccess(result ->
+            // Resolve device IPs from the inventory cache
+            DeviceInventoryCache.getDevices(deviceIds).onSuccess(devicesData ->
                     {
-                        // If the query was successful
-                        if(Boolean.TRUE.equals(result.getBoolean(Constants.SUCCESS)))
-                        {
-                            var devicesData = result.getJsonArray(Constants.DATA);
-
-                            var timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "Z";
+                        // UTC instant, the daily partitions are bounded by UTC days whatever the host time zone
+                        var timeStamp = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
 
-                            // If devices are found, execute the fping utility for availability check
-                            if (!devicesData.isEmpty())
+                        // If devices are found, execute the fping utility for availability check
+                        if (!devicesData.isEmpty())
+                        {
+                            vertx.executeBlocking(() -> Utils.ping(devicesData), false, asyncResult ->
                             {
-                                vertx.executeBlocking(() -> Utils.ping(devicesData), false, asyncResult ->
+                                // Handle the result of the fping utility
+                                if (asyncResult.succeeded())
                                 {
-                                    // Handle the result of the fping utility
-                                    if (asyncResult.succeeded())
-                                    {
-                                        var pingOutput = asyncResult.result();
+                                    var pingOutput = asyncResult.result();
 
-                                        // If fping result is not empty, update the device status in the cache
-                                        if (!pingOutput.isEmpty())
+                                    // If fping result is not empty, update the device status in the cache
+                                    if (!pingOutput.isEmpty())
+                                    {
+                                        for (var index = 0; index < pingOutput.size(); index++)
                                         {
-                                            for (var index = 0; index < pingOutput.size(); index++)
+                                            try
                                             {
-                                                try
-                                                {
-                                                    var deviceResult = pingOutput.getJsonObject(index);
-
-                                                    // Set device status based on fping result (UP/DOWN)
-                                                    AvailabilityCacheEngine.setDeviceStatus(deviceResult.getInteger(Constants.ID),
-                                                            deviceResult.getString(Constants.STATUS));
-                                                }
-                                                catch (Exception exception)
-                                                {
-                                                    // Log any exception during status update
-                                                    LOGGER.error("Error in set up device status: {}", exception.getMessage());
-                                                }
-                                            }
+                                                var deviceResult = pingOutput.getJsonObject(index);
 
-                                            updatePingResultsInDb(pingOutput, timeStamp);
-                                        }
-                                        else
-                                        {
-                                            LOGGER.error("Ping process failed");
+                                                // Set device status based on fping result (UP/DOWN)
+                                                AvailabilityCacheEngine.setDeviceStatus(deviceResult.getInteger(Constants.ID),
+                                                        deviceResult.getString(Constants.STATUS));
+                                            }
+                                            catch (Exception exception)
+                                            {
+                                                // Log any exception during status update
+                                                LOGGER.error("Error in set up device status: {}", exception.getMessage());
+                                            }
                                         }
+
+                                        updatePingResultsInDb(pingOutput, timeStamp);
                                     }
-                                });
-                            }
+                                    else
+                                    {
+                                        LOGGER.error("Ping process failed");
+                                    }
+                                }
+                            });
                         }
                     }).onFailure(error -> LOGGER.error("Error in fetching devices for availability polling: {}"
                     , error.getMessage()));
@@ -177,30 +153,50 @@ public class AvailabilityPollingEngine extends AbstractVerticle
         }
     }
 
-    private static void updatePingResultsInDb(JsonArray pingOutput, String timeStamp)
+    /**
+     * Hands the ping results to the result writer, which batches them into the availability results table.
+     *
+     * @param pingOutput ping results per device
+     * @param timeStamp  time at which the devices were polled
+     */
+    private void updatePingResultsInDb(JsonArray pingOutput, String timeStamp)
     {
         try
         {
-            var batchParams = new JsonArray();
+            var provisionIds = new JsonArray();
+
+            var packetsSend = new JsonArray();
+
+            var packetsReceived = new JsonArray();
+
+            var packetLossPercentages = new JsonArray();
 
+            var timeStamps = new JsonArray();
+
+            // Build one array per column, each bound as a single parameter
             for (var index = 0; index < pingOutput.size(); index++)
             {
                 var pingResult = pingOutput.getJsonObject(index);
 
-                // Create array for each row
-                var paramArray = new JsonArray()
-                        .add(pingResult.getInteger(Constants.ID))
-                        .add(pingResult.getInteger(Constants.PACKETS_SEND))
-                        .add(pingResult.getInteger(Constants.PACKETS_RECEIVED))
-                        .add(pingResult.getInteger(Constants.PACKET_LOSS_PERCENTAGE))
-                        .add(timeStamp);
+                provisionIds.add(pingResult.getInteger(Constants.ID));
+
+                packetsSend.add(pingResult.getInteger(Constants.PACKETS_SEND));
+
+                packetsReceived.add(pingResult.getInteger(Constants.PACKETS_RECEIVED));
+
+                packetLossPercentages.add(pingResult.getInteger(Constants.PACKET_LOSS_PERCENTAGE));
 
-                batchParams.add(paramArray);
+                timeStamps.add(timeStamp);
             }
 
-            DATABASE_SERVICE.executeQuery(new JsonObject().put(Constants.QUERY, INSERT_PING_RESULTS_QUERY)
-                            .put(Constants.PARAMS, batchParams)).onFailure(error ->
-                                    LOGGER.error("Error in inserting ping results: {}", error.getMessage()));
+            vertx.eventBus().send(Constants.RESULT_WRITER_ADDRESS, new JsonObject()
+                    .put(Constants.QUERY, INSERT_PING_RESULTS_QUERY)
+                    .put(Constants.PARAMS, new JsonArray()
+                            .add(provisionIds)
+                            .add(packetsSend)
+                            .add(packetsReceived)
+                            .add(packetLossPercentages)
+                            .add(timeStamps)));
         }
         catch (Exception exception)
         {
@@ -0,0 +1,164 @@
+package org.example.verticles;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.service.database.Database;
+import org.example.service.database.DatabaseService;
+import org.example.utils.Constants;
+import org.example.utils.Utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Writes a columnar result batch, isolating the rows the database rejects for their data.
+ * A batch failing with a permanent SQLState is split in halves and each half is written again,
+ * down to single rows, so one orphan or malformed row only rejects itself and not the rest of the batch.
+ * Halves are written one after another, a transient failure stops the split and returns the halves not written yet.
+ */
+final class BatchWriter
+{
+    private static final DatabaseService DATABASE_SERVICE = DatabaseService.createProxy(Database.DB_SERVICE_ADDRESS);
+
+    private BatchWriter() {}
+
+    /**
+     * Writes a batch with the ingestion workload.
+     *
+     * @param query   target statement
+     * @param columns parameter columns of the batch
+     * @return Future with the outcome, never failed
+     */
+    static Future<Outcome> write(String query, JsonArray columns)
+    {
+        return insert(query, columns).transform(asyncResult ->
+        {
+            if (asyncResult.succeeded())
+            {
+                return Future.succeededFuture(new Outcome(rows(columns), List.of(), List.of(), null, Constants.FALSE));
+            }
+
+            if (!Utils.isPermanentFailure(asyncResult.cause()))
+            {
+                return Future.succeededFuture(new Outcome(0, List.of(), List.of(columns), asyncResult.cause(), Constants.FALSE));
+            }
+
+            var pending = new ArrayDeque<JsonArray>();
+
+            split(columns, pending);
+
+            return writeSplit(query, pending, new Outcome(0, new ArrayList<>(), new ArrayList<>(), null, Constants.TRUE));
+        });
+    }
+
+    /**
+     * Writes the pending parts in order, splitting again every part rejected for its data.
+     */
+    private static Future<Outcome> writeSplit(String query, Deque<JsonArray> pending, Outcome outcome)
+    {
+        var columns = pending.pollFirst();
+
+        if (columns == null)
+        {
+            return Future.succeededFuture(outcome);
+        }
+
+        return insert(query, columns).transform(asyncResult ->
+        {
+            if (asyncResult.succeeded())
+            {
+                return writeSplit(query, pending, outcome.addWritten(rows(columns)));
+            }
+
+            if (!Utils.isPermanentFailure(asyncResult.cause()))
+            {
+                outcome.unwritten().add(columns);
+
+                outcome.unwritten().addAll(pending);
+
+                return Future.succeededFuture(outcome.withCause(asyncResult.cause()));
+            }
+
+            if (rows(columns) == 1)
+            {
+                outcome.rejected().add(new Rejected(columns, asyncResult.cause().getMessage()));
+            }
+            else
+            {
+                split(columns, pending);
+            }
+
+            return writeSplit(query, pending, outcome);
+        });
+    }
+
+    private static Future<JsonObject> insert(String query, JsonArray columns)
+    {
+        return DATABASE_SERVICE.executeColumnarQuery(new JsonObject()
+                .put(Constants.QUERY, query)
+                .put(Constants.PARAMS, columns)
+                .put(Constants.WORKLOAD, Constants.WORKLOAD_INGESTION));
+    }
+
+    /**
+     * Pushes both halves of a batch at the front of the pending parts, the first half first.
+     */
+    private static void split(JsonArray columns, Deque<JsonArray> pending)
+    {
+        var rows = rows(columns);
+
+        var middle = rows / 2;
+
+        var head = new JsonArray();
+
+        var tail = new JsonArray();
+
+        for (var index = 0; index < columns.size(); index++)
+        {
+            var values = columns.getJsonArray(index).getList();
+
+            head.add(new JsonArray(new ArrayList<>(values.subList(0, middle))));
+
+            tail.add(new JsonArray(new ArrayList<>(values.subList(middle, rows))));
+        }
+
+        pending.addFirst(tail);
+
+        pending.addFirst(head);
+    }
+
+    static int rows(JsonArray columns)
+    {
+        return columns.isEmpty() ? 0 : columns.getJsonArray(0).size();
+    }
+
+    /**
+     * A single row the database rejected, with the error it failed with.
+     */
+    record Rejected(JsonArray columns, String reason) {}
+
+    /**
+     * Result of a batch write.
+     *
+     * @param written   number of rows written
+     * @param rejected  rows rejected for their data
+     * @param unwritten parts left unwritten by a transient failure, to be retried later
+     * @param cause     the transient failure, null if every part was written or rejected
+     * @param split     whether the batch was split, false means unwritten holds the whole batch or nothing
+     */
+    record Outcome(int written, List<Rejected> rejected, List<JsonArray> unwritten, Throwable cause, boolean split)
+    {
+        private Outcome addWritten(int rows)
+        {
+            return new Outcome(written + rows, rejected, unwritten, cause, split);
+        }
+
+        private Outcome withCause(Throwable failure)
+        {
+            return new Outcome(written, rejected, unwritten, failure, split);
+        }
+    }
+}
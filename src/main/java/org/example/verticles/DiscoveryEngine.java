@@ -1,24 +1,41 @@
 package org.example.verticles;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.NetClient;
+import io.vertx.core.net.NetClientOptions;
+import org.example.cache.DiscoveryJobCache;
+import org.example.cache.DiscoveryResultCache;
 import org.example.service.database.DatabaseService;
 import org.example.service.database.Database;
 import org.example.utils.Constants;
+import org.example.utils.IpRange;
+import org.example.utils.MotaDataConfigUtil;
 import org.example.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Verticle responsible for handling discovery of devices using a multi-step process.
  * It fetches device data, runs ping checks using fping, performs SSH-based checks via a Go plugin,
  * and updates the discovery status in the database accordingly.
+ * Discovery jobs are run chunk by chunk, with their progress kept in {@link DiscoveryJobCache}.
+ * Profiles targeting a CIDR block or a range are swept with non-blocking TCP connects to their port instead of fping,
+ * only the responders are handed to the SSH check and their results are kept per address in discovery_results.
+ * Targets verified recently with the same credentials are answered from {@link DiscoveryResultCache} unless forced.
  */
 public class DiscoveryEngine extends AbstractVerticle
 {
@@ -31,16 +48,88 @@ public class DiscoveryEngine extends AbstractVerticle
     // Step name used when ping fails
     private static final String FAILURE_STEP_PING  = "ping";
 
-    // SQL query to update discovery status
-    private static final String UPDATE_DISCOVERY_RESULT_QUERY = "UPDATE discovery_profiles SET status = $1 WHERE id = $2";
+    // Step name used when no address of a range answers on the port
+    private static final String FAILURE_STEP_SWEEP = "sweep";
+
+    // SQL query to update discovery status, a range profile is discovered when any of its addresses is
+    private static final String UPDATE_DISCOVERY_RESULT_QUERY = "UPDATE discovery_profiles dp SET status = t.status " +
+            "FROM (SELECT id, bool_or(status) AS status FROM unnest($1::boolean[], $2::int[]) AS u(status, id) GROUP BY id) t " +
+            "WHERE dp.id = t.id";
+
+    // Replaces the per address results of the swept range profiles, addresses that stopped answering are dropped.
+    // The sweep failure of a range without responders names the range itself, it only clears the stale results
+    private static final String UPDATE_RANGE_RESULTS_QUERY = """
+            WITH results AS (
+                SELECT * FROM unnest($1::int[], $2::text[], $3::boolean[], $4::text[])
+                AS t(discovery_profile_id, ip, status, step)
+            ),
+            cleared AS (
+                DELETE FROM discovery_results r
+                WHERE r.discovery_profile_id IN (SELECT discovery_profile_id FROM results)
+                AND NOT EXISTS (SELECT 1 FROM results n
+                                WHERE n.discovery_profile_id = r.discovery_profile_id AND n.ip = r.ip)
+            )
+            INSERT INTO discovery_results (discovery_profile_id, ip, status, step)
+            SELECT discovery_profile_id, ip, status, step FROM results
+            WHERE step IS DISTINCT FROM 'sweep'
+            ON CONFLICT (discovery_profile_id, ip) DO UPDATE
+            SET status = EXCLUDED.status, step = EXCLUDED.step, discovered_at = now()
+            """;
 
     // Service proxy for interacting with the database
     private static final DatabaseService DATABASE_SERVICE = DatabaseService.createProxy(Database.DB_SERVICE_ADDRESS);
 
+    // Config keys
+    private static final String JOB_CHUNK_SIZE = "discovery.job.chunk.size";
+
+    private static final String JOB_RETENTION = "discovery.job.retention.in.milliseconds";
+
+    private static final String SSH_BATCH_SIZE = "discovery.ssh.batch.size";
+
+    private static final String PLUGIN_POOL_SIZE = "discovery.plugin.pool.size";
+
+    private static final String SWEEP_CONCURRENCY = "discovery.sweep.concurrency";
+
+    private static final String SWEEP_CONNECT_TIMEOUT = "discovery.sweep.connect.timeout.in.milliseconds";
+
+    // Defaults
+    private static final int DEFAULT_JOB_CHUNK_SIZE = 50;
+
+    private static final long DEFAULT_JOB_RETENTION = 3_600_000;
+
+    private static final int DEFAULT_SSH_BATCH_SIZE = 25;
+
+    private static final int DEFAULT_PLUGIN_POOL_SIZE = 4;
+
+    private static final int DEFAULT_SWEEP_CONCURRENCY = 256;
+
+    private static final int DEFAULT_SWEEP_CONNECT_TIMEOUT = 1000;
+
+    private static final String PLUGIN_POOL_NAME = "discovery-plugin-pool";
+
     private MessageConsumer<JsonArray> localConsumer;
+
+    private MessageConsumer<JsonObject> jobConsumer;
+
+    private int jobChunkSize;
+
+    private long jobRetention;
+
+    private int sshBatchSize;
+
+    // Runs the SSH stage, so plugin batches do not wait behind the ping stage on the shared worker pool
+    private WorkerExecutor pluginExecutor;
+
+    private int sweepConcurrency;
+
+    private long sweepMaxAddresses;
+
+    // Probes the ports of range targets, its callbacks run on this verticle's event loop
+    private NetClient netClient;
+
     /**
      * Called when the verticle is deployed.
-     * Registers the consumer to handle discovery events on the event bus.
+     * Registers the consumers handling discovery requests and discovery jobs on the event bus.
      *
      * @param startPromise the promise to be completed when verticle starts
      */
@@ -49,9 +138,28 @@ public class DiscoveryEngine extends AbstractVerticle
     {
         try
         {
+            jobChunkSize = MotaDataConfigUtil.getConfig().getInteger(JOB_CHUNK_SIZE, DEFAULT_JOB_CHUNK_SIZE);
+
+            jobRetention = MotaDataConfigUtil.getConfig().getLong(JOB_RETENTION, DEFAULT_JOB_RETENTION);
+
+            sshBatchSize = MotaDataConfigUtil.getConfig().getInteger(SSH_BATCH_SIZE, DEFAULT_SSH_BATCH_SIZE);
+
+            pluginExecutor = vertx.createSharedWorkerExecutor(PLUGIN_POOL_NAME,
+                    MotaDataConfigUtil.getConfig().getInteger(PLUGIN_POOL_SIZE, DEFAULT_PLUGIN_POOL_SIZE));
+
+            sweepConcurrency = MotaDataConfigUtil.getConfig().getInteger(SWEEP_CONCURRENCY, DEFAULT_SWEEP_CONCURRENCY);
+
+            sweepMaxAddresses = MotaDataConfigUtil.getConfig().getLong(Constants.DISCOVERY_SWEEP_MAX_ADDRESSES,
+                    Constants.DEFAULT_DISCOVERY_SWEEP_MAX_ADDRESSES);
+
+            netClient = vertx.createNetClient(new NetClientOptions().setConnectTimeout(MotaDataConfigUtil.getConfig()
+                    .getInteger(SWEEP_CONNECT_TIMEOUT, DEFAULT_SWEEP_CONNECT_TIMEOUT)));
+
             // Initialize the discovery service by consuming the event bus address
             localConsumer = vertx.eventBus().localConsumer(Constants.DISCOVERY_ADDRESS, this::handleDiscoveryRequest);
 
+            jobConsumer = vertx.eventBus().localConsumer(Constants.DISCOVERY_JOB_ADDRESS, this::handleDiscoveryJob);
+
             startPromise.complete();
         }
         catch (Exception exception)
@@ -61,10 +169,10 @@ public class DiscoveryEngine extends AbstractVerticle
     }
 
     /**
-     * Handles the discovery request by processing the device IDs,
-     * running fping and SSH checks, and updating database with results.
+     * Handles the discovery request by running fping and SSH checks on the devices,
+     * updating the database and replying with the per device results.
      *
-     * @param discoveryRequest the message containing an array of discovery profile IDs
+     * @param discoveryRequest the message containing the devices to discover
      */
     private void handleDiscoveryRequest(Message<JsonArray> discoveryRequest)
     {
@@ -72,142 +180,669 @@ public class DiscoveryEngine extends AbstractVerticle
         {
             var devicesData = discoveryRequest.body();
 
-            // Execute database query to fetch device data
-            vertx.executeBlocking(() ->
+            discover(devicesData, Constants.FALSE, null).onComplete(result ->
             {
-                var discoveryResponse = new JsonArray();
+                // Final result processing after blocking call
+                if (result.failed())
+                {
+                    LOGGER.error("Discovery processing failed: {}", result.cause().getMessage());
 
-                var idToDeviceDataMap = new HashMap<Integer, JsonObject>();
+                    discoveryRequest.fail(500, result.cause().getMessage());
+                }
+                else if (result.result().isSuccess())
+                {
+                    var discoveryResponse = result.result().discoveryResponse();
 
-                // Map device ID to its full data for quick lookup
-                for (var index = 0; index < devicesData.size(); index++)
+                    updateDiscoveryStatus(discoveryResponse)
+                            .onSuccess(updateResult -> discoveryRequest.reply(discoveryResponse))
+                            .onFailure(updateError -> discoveryRequest.fail(500, "Database update failed: "
+                                    + updateError.getMessage()));
+                }
+                else
                 {
-                    idToDeviceDataMap.put(devicesData.getJsonObject(index).getInteger(Constants.ID),
-                            devicesData.getJsonObject(index));
+                    LOGGER.error("Discovery failed: {}", result.result().errorMessage());
+
+                    discoveryRequest.fail(500, result.result().errorMessage());
                 }
+            });
+        }
+        catch (Exception exception)
+        {
+            // Catch any unexpected exceptions
+            LOGGER.error("Unexpected error in discovery request: {}", exception.getMessage());
+
+            discoveryRequest.fail(500, "Internal server error");
+        }
+    }
+
+    /**
+     * Runs a discovery job registered in {@link DiscoveryJobCache}. The devices are discovered chunk by chunk,
+     * so a worker thread is only held for one chunk at a time, and the results of every chunk are added to the job
+     * and published on the job's events address as they complete.
+     *
+     * @param jobRequest the message holding the job ID, the devices to discover and whether cached results are bypassed
+     */
+    private void handleDiscoveryJob(Message<JsonObject> jobRequest)
+    {
+        try
+        {
+            discoverChunk(jobRequest.body().getString(Constants.JOB_ID), jobRequest.body().getJsonArray(Constants.DATA), 0,
+                    jobRequest.body().getBoolean(Constants.FORCE, Constants.FALSE));
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Unexpected error in discovery job: {}", exception.getMessage());
+
+            finishJob(jobRequest.body().getString(Constants.JOB_ID), exception.getMessage());
+        }
+    }
+
+    /**
+     * Discovers the chunk of devices starting at offset, then continues with the next chunk.
+     *
+     * @param jobId       job ID
+     * @param devicesData all devices of the job
+     * @param offset      position of the first device of the chunk
+     * @param force       whether cached results are bypassed
+     */
+    private void discoverChunk(String jobId, JsonArray devicesData, int offset, boolean force)
+    {
+        if (offset >= devicesData.size())
+        {
+            finishJob(jobId, null);
+
+            return;
+        }
+
+        var chunk = new JsonArray();
+
+        var hosts = 0;
+
+        for (var index = offset; index < Math.min(offset + jobChunkSize, devicesData.size()); index++)
+        {
+            chunk.add(devicesData.getValue(index));
+
+            if (!IpRange.isRange(devicesData.getJsonObject(index).getString(Constants.IP)))
+            {
+                hosts++;
+            }
+        }
+
+        var hostCount = hosts;
+
+        discover(chunk, force, jobId).onComplete(result ->
+        {
+            if (result.failed() || !result.result().isSuccess())
+            {
+                var errorMessage = result.failed() ? result.cause().getMessage() : result.result().errorMessage();
+
+                LOGGER.error("Discovery job {} failed: {}", jobId, errorMessage);
 
-                // Run fping to check which devices are reachable
-                var pingResult = Utils.ping(devicesData);
+                finishJob(jobId, errorMessage);
 
-                if (pingResult.isEmpty())
+                return;
+            }
+
+            var discoveryResponse = result.result().discoveryResponse();
+
+            updateDiscoveryStatus(discoveryResponse).onComplete(updateResult ->
+            {
+                // Unstored statuses would make provisioning report the devices as not discovered
+                if (updateResult.failed())
                 {
-                    LOGGER.error("ping processing failed");
+                    LOGGER.error("Discovery job {} failed: {}", jobId, updateResult.cause().getMessage());
 
-                    return new DiscoveryResult(discoveryResponse, "ping processing failed");
+                    finishJob(jobId, "Database update failed: " + updateResult.cause().getMessage());
+
+                    return;
                 }
 
-                //data of devices that are eligible for port and ssh connection check
-                var sshFilteredDevicesData = new JsonArray();
+                // Range results, the ones carrying an ip, and their progress were already published while sweeping
+                var hostResults = new JsonArray();
 
-                // Filter ping result to select devices that are UP
-                for (var index = 0; index < pingResult.size(); index++)
+                for (var index = 0; index < discoveryResponse.size(); index++)
                 {
-                    var pingOutput = pingResult.getJsonObject(index);
-
-                    if (pingOutput.getString(Constants.STATUS).equals(Constants.UP))
+                    if (!discoveryResponse.getJsonObject(index).containsKey(Constants.IP))
                     {
-                        sshFilteredDevicesData.add(idToDeviceDataMap.get(pingOutput.getInteger(Constants.ID)));
-                    }
-                    else
-                    {
-                        discoveryResponse.add(new JsonObject()
-                                .put(Constants.ID, pingOutput.getInteger(Constants.ID))
-                                .put(Constants.SUCCESS, Constants.FALSE)
-                                .put(STEP, FAILURE_STEP_PING));
+                        hostResults.add(discoveryResponse.getJsonObject(index));
                     }
                 }
 
-                // If no devices passed ping, return early
-                if (sshFilteredDevicesData.isEmpty())
+                publishResults(jobId, hostResults, hostCount);
+
+                discoverChunk(jobId, devicesData, offset + chunk.size(), force);
+            });
+        });
+    }
+
+    /**
+     * Adds results to the job and publishes one event per device, or per responding address of a range.
+     *
+     * @param jobId             job ID
+     * @param discoveryResponse results to add
+     * @param processed         number of devices or swept addresses the results complete
+     */
+    private void publishResults(String jobId, JsonArray discoveryResponse, int processed)
+    {
+        var index = DiscoveryJobCache.addResults(jobId, discoveryResponse, processed);
+
+        for (var position = 0; position < discoveryResponse.size(); position++)
+        {
+            vertx.eventBus().publish(Constants.DISCOVERY_JOB_EVENTS_ADDRESS + jobId, new JsonObject()
+                    .put(Constants.EVENT, Constants.RESULT)
+                    .put(Constants.INDEX, index + position)
+                    .put(Constants.DATA, discoveryResponse.getJsonObject(position)));
+        }
+    }
+
+    /**
+     * Marks the job finished, publishes its final state and drops it once the retention elapsed.
+     *
+     * @param jobId        job ID
+     * @param errorMessage reason the job failed, null if it completed
+     */
+    private void finishJob(String jobId, String errorMessage)
+    {
+        DiscoveryJobCache.finishJob(jobId, errorMessage);
+
+        var job = DiscoveryJobCache.getJob(jobId);
+
+        if (job != null)
+        {
+            job.remove(Constants.RESULTS);
+
+            vertx.eventBus().publish(Constants.DISCOVERY_JOB_EVENTS_ADDRESS + jobId, new JsonObject()
+                    .put(Constants.EVENT, job.getString(Constants.STATUS))
+                    .put(Constants.DATA, job));
+        }
+
+        vertx.setTimer(jobRetention, timerId -> DiscoveryJobCache.removeJob(jobId));
+    }
+
+    /**
+     * Discovers the single address profiles, then sweeps the range profiles one after the other,
+     * so the connects in flight stay under the sweep concurrency whatever the number of ranges.
+     *
+     * @param devicesData the devices to discover
+     * @param force       whether cached results are bypassed and every target is checked again
+     * @param jobId       job the devices are discovered for, null outside of a job
+     * @return Future of the per device results, or of the error that stopped discovery
+     */
+    private Future<DiscoveryResult> discover(JsonArray devicesData, boolean force, String jobId)
+    {
+        var hostsData = new JsonArray();
+
+        var rangesData = new ArrayList<JsonObject>();
+
+        for (var index = 0; index < devicesData.size(); index++)
+        {
+            var deviceData = devicesData.getJsonObject(index);
+
+            if (IpRange.isRange(deviceData.getString(Constants.IP)))
+            {
+                rangesData.add(deviceData);
+            }
+            else
+            {
+                hostsData.add(deviceData);
+            }
+        }
+
+        var discovery = hostsData.isEmpty()
+                ? Future.succeededFuture(new DiscoveryResult(new JsonArray(), null))
+                : discoverHosts(hostsData, force);
+
+        for (var rangeData : rangesData)
+        {
+            discovery = discovery.compose(result -> !result.isSuccess()
+                    ? Future.succeededFuture(result)
+                    : discoverRange(rangeData, force, jobId).map(rangeResult -> rangeResult.isSuccess()
+                            ? new DiscoveryResult(result.discoveryResponse().addAll(rangeResult.discoveryResponse()), null)
+                            : rangeResult));
+        }
+
+        return discovery;
+    }
+
+    /**
+     * Pings the devices and runs the SSH check of the Go plugin on the reachable ones as a pipeline.
+     * Devices are queued for the SSH check as soon as their first ping reply arrives, and every full batch
+     * is handed to the plugin executor while fping is still waiting on the remaining devices.
+     * Devices with a cached result are answered from the cache and not pinged at all.
+     *
+     * @param devicesData the devices to discover
+     * @param force       whether cached results are bypassed
+     * @return Future of the per device results, or of the error that stopped discovery
+     */
+    private Future<DiscoveryResult> discoverHosts(JsonArray devicesData, boolean force)
+    {
+        var discoveryResponse = new JsonArray();
+
+        var pendingData = force ? devicesData : takeCachedResults(devicesData, discoveryResponse);
+
+        if (pendingData.isEmpty())
+        {
+            return Future.succeededFuture(new DiscoveryResult(discoveryResponse, null));
+        }
+
+        var idToDeviceDataMap = new HashMap<Integer, JsonObject>();
+
+        // Map device ID to its full data for quick lookup
+        for (var index = 0; index < pendingData.size(); index++)
+        {
+            idToDeviceDataMap.put(pendingData.getJsonObject(index).getInteger(Constants.ID),
+                    pendingData.getJsonObject(index));
+        }
+
+        var pluginRuns = new ArrayList<Future<JsonArray>>();
+
+        return vertx.executeBlocking(() ->
+        {
+            //data of devices that are eligible for port and ssh connection check
+            var sshBatch = new JsonArray();
+
+            // Run fping, queueing each device into the SSH stage on its first reply
+            var pingResult = Utils.ping(pendingData.copy(), id ->
+            {
+                sshBatch.add(idToDeviceDataMap.get(id));
+
+                if (sshBatch.size() >= sshBatchSize)
                 {
-                    return new DiscoveryResult(discoveryResponse, null);
+                    pluginRuns.add(runPlugin(sshBatch.copy()));
+
+                    sshBatch.clear();
                 }
+            });
 
-                // Run SSH discovery using Go plugin
-                var pluginOutput = Utils.spawnGoPlugin(sshFilteredDevicesData, Constants.DISCOVERY);
+            if (!sshBatch.isEmpty())
+            {
+                pluginRuns.add(runPlugin(sshBatch));
+            }
 
-                if (pluginOutput.isEmpty())
-                {
-                    LOGGER.error("Go plugin execution failed");
+            return pingResult;
+
+        }, false).compose(pingResult ->
+        {
+            if (pingResult.isEmpty())
+            {
+                LOGGER.error("ping processing failed");
+
+                return Future.succeededFuture(new DiscoveryResult(discoveryResponse, "ping processing failed"));
+            }
+
+            // Devices without any reply failed at the ping step
+            for (var index = 0; index < pingResult.size(); index++)
+            {
+                var pingOutput = pingResult.getJsonObject(index);
 
-                    return new DiscoveryResult(discoveryResponse.clear(), "Go plugin execution failed");
+                if (!pingOutput.getString(Constants.STATUS).equals(Constants.UP))
+                {
+                    discoveryResponse.add(new JsonObject()
+                            .put(Constants.ID, pingOutput.getInteger(Constants.ID))
+                            .put(Constants.SUCCESS, Constants.FALSE)
+                            .put(STEP, FAILURE_STEP_PING));
                 }
+            }
 
-                // Add plugin output to the response
-                for (var index = 0; index < pluginOutput.size(); index++)
+            return Future.all(pluginRuns).map(pluginRunsResult ->
+            {
+                for (var pluginRun : pluginRuns)
                 {
-                    var pluginResult = pluginOutput.getJsonObject(index);
+                    var pluginOutput = pluginRun.result();
 
-                    discoveryResponse.add(new JsonObject()
-                            .put(Constants.ID, pluginResult.getInteger(Constants.ID))
-                            .put(Constants.SUCCESS, pluginResult.getBoolean(Constants.SUCCESS))
-                            .put(STEP, pluginResult.getString(STEP)));
+                    if (pluginOutput.isEmpty())
+                    {
+                        LOGGER.error("Go plugin execution failed");
+
+                        return new DiscoveryResult(discoveryResponse.clear(), "Go plugin execution failed");
+                    }
+
+                    // Add plugin output to the response
+                    for (var index = 0; index < pluginOutput.size(); index++)
+                    {
+                        var pluginResult = pluginOutput.getJsonObject(index);
+
+                        var deviceResult = new JsonObject()
+                                .put(Constants.ID, pluginResult.getInteger(Constants.ID))
+                                .put(Constants.SUCCESS, pluginResult.getBoolean(Constants.SUCCESS))
+                                .put(STEP, pluginResult.getString(STEP));
+
+                        DiscoveryResultCache.put(idToDeviceDataMap.get(deviceResult.getInteger(Constants.ID)), deviceResult);
+
+                        discoveryResponse.add(deviceResult);
+                    }
                 }
 
                 return new DiscoveryResult(discoveryResponse, null);
+            });
+        });
+    }
 
-            }, false, result ->
+    /**
+     * Moves the devices with a cached result into the response, marked as cached.
+     *
+     * @param devicesData       the devices to discover
+     * @param discoveryResponse response receiving the cached results
+     * @return the devices left to check
+     */
+    private static JsonArray takeCachedResults(JsonArray devicesData, JsonArray discoveryResponse)
+    {
+        var pendingData = new JsonArray();
+
+        for (var index = 0; index < devicesData.size(); index++)
+        {
+            var deviceData = devicesData.getJsonObject(index);
+
+            var cachedResult = DiscoveryResultCache.get(deviceData);
+
+            if (cachedResult == null)
             {
-                // Final result processing after blocking call
-                if (result.failed())
+                pendingData.add(deviceData);
+            }
+            else
+            {
+                discoveryResponse.add(cachedResult
+                        .put(Constants.ID, deviceData.getInteger(Constants.ID))
+                        .put(Constants.CACHED, Constants.TRUE));
+            }
+        }
+
+        return pendingData;
+    }
+
+    /**
+     * Sweeps the addresses of a range profile and runs the SSH check of the Go plugin on the ones answering on its port.
+     * Responders are batched into the plugin while the sweep goes on, the ones with a cached result skip the SSH check.
+     * Results carry the profile ID and the address, a range without any responder yields a single failure at the sweep step.
+     * Within a job, every swept address counts as processed and results are published as each plugin batch
+     * or cached responder completes, instead of once the whole range is done.
+     *
+     * @param rangeData the range profile to discover
+     * @param force     whether cached results are bypassed
+     * @param jobId     job the range is discovered for, null outside of a job
+     * @return Future of the per address results, or of the error that stopped discovery
+     */
+    private Future<DiscoveryResult> discoverRange(JsonObject rangeData, boolean force, String jobId)
+    {
+        var profileId = rangeData.getInteger(Constants.ID);
+
+        IpRange range;
+
+        try
+        {
+            range = IpRange.parse(rangeData.getString(Constants.IP), sweepMaxAddresses);
+        }
+        catch (IllegalArgumentException exception)
+        {
+            LOGGER.error("Invalid range of discovery profile {}: {}", profileId, exception.getMessage());
+
+            var failure = new JsonArray().add(new JsonObject()
+                    .put(Constants.ID, profileId)
+                    .put(Constants.IP, rangeData.getString(Constants.IP))
+                    .put(Constants.SUCCESS, Constants.FALSE)
+                    .put(STEP, FAILURE_STEP_SWEEP)
+                    .put(Constants.ERROR, exception.getMessage()));
+
+            // The job counted an invalid range as a single target
+            streamResults(jobId, failure, 1);
+
+            return Future.succeededFuture(new DiscoveryResult(failure, null));
+        }
+
+        // The plugin echoes the ID of every device, so each responder gets its own probe ID
+        var probeAddresses = new HashMap<Integer, String>();
+
+        var pluginRuns = new ArrayList<Future<JsonArray>>();
+
+        var sshBatch = new JsonArray();
+
+        var discoveryResponse = new JsonArray();
+
+        return sweep(range, rangeData.getInteger(Constants.PORT), ip ->
+        {
+            var cachedResult = force ? null : DiscoveryResultCache.get(rangeData.copy().put(Constants.IP, ip));
+
+            if (cachedResult != null)
+            {
+                cachedResult.put(Constants.ID, profileId).put(Constants.IP, ip).put(Constants.CACHED, Constants.TRUE);
+
+                discoveryResponse.add(cachedResult);
+
+                streamResults(jobId, new JsonArray().add(cachedResult), 0);
+
+                return;
+            }
+
+            var probeId = probeAddresses.size() + 1;
+
+            probeAddresses.put(probeId, ip);
+
+            sshBatch.add(rangeData.copy().put(Constants.ID, probeId).put(Constants.IP, ip));
+
+            if (sshBatch.size() >= sshBatchSize)
+            {
+                pluginRuns.add(runRangePlugin(rangeData, sshBatch.copy(), probeAddresses, jobId));
+
+                sshBatch.clear();
+            }
+        }, () -> streamResults(jobId, new JsonArray(), 1)).compose(swept ->
+        {
+            if (!sshBatch.isEmpty())
+            {
+                pluginRuns.add(runRangePlugin(rangeData, sshBatch.copy(), probeAddresses, jobId));
+            }
+
+            LOGGER.debug("Swept {} addresses of discovery profile {}, {} responded", range.size(), profileId,
+                    probeAddresses.size());
+
+            return Future.join(pluginRuns).map(pluginRunsResult ->
+            {
+                for (var pluginRun : pluginRuns)
                 {
-                    LOGGER.error("Discovery processing failed: {}", result.cause().getMessage());
+                    if (pluginRun.failed())
+                    {
+                        return new DiscoveryResult(discoveryResponse.clear(), pluginRun.cause().getMessage());
+                    }
 
-                    discoveryRequest.fail(500, result.cause().getMessage());
+                    discoveryResponse.addAll(pluginRun.result());
                 }
-                else
+
+                if (discoveryResponse.isEmpty())
                 {
-                    var discoveryResult = result.result();
+                    var failure = new JsonObject()
+                            .put(Constants.ID, profileId)
+                            .put(Constants.IP, rangeData.getString(Constants.IP))
+                            .put(Constants.SUCCESS, Constants.FALSE)
+                            .put(STEP, FAILURE_STEP_SWEEP);
 
-                    if (discoveryResult.isSuccess())
-                    {
-                        var discoveryResponse = discoveryResult.discoveryResponse();
-
-                        var batchParams = new JsonArray();
-
-                        // Prepare parameters for batch update to DB
-                        for (var index = 0; index < discoveryResponse.size(); index++)
-                        {
-                            var responseObject = discoveryResponse.getJsonObject(index);
-
-                            batchParams.add(new JsonArray()
-                                    .add(responseObject.getBoolean(Constants.SUCCESS))
-                                    .add(responseObject.getInteger(Constants.ID)));
-                        }
-
-                        // Send batch update request to database
-                        DATABASE_SERVICE.executeQuery(new JsonObject()
-                                        .put(Constants.QUERY, UPDATE_DISCOVERY_RESULT_QUERY)
-                                        .put(Constants.PARAMS, batchParams))
-                                .onSuccess(updateResult -> discoveryRequest.reply(discoveryResponse))
-                                .onFailure(updateError ->
-                                {
-                                    LOGGER.error("Database update failed: {}", updateError.getMessage());
-
-                                    discoveryRequest.fail(500, "Database update failed: "
-                                            + updateError.getMessage());
-                                });
-
-                        discoveryRequest.reply(result.result().discoveryResponse());
-                    }
-                    else
-                    {
-                        LOGGER.error("Discovery failed: {}", result.result().errorMessage());
+                    discoveryResponse.add(failure);
 
-                        discoveryRequest.fail(500, result.result().errorMessage());
-                    }
+                    streamResults(jobId, new JsonArray().add(failure), 0);
                 }
+
+                return new DiscoveryResult(discoveryResponse, null);
             });
+        });
+    }
+
+    /**
+     * Runs the SSH check of one batch of range responders and maps the plugin output back to their addresses.
+     * The results are cached and published as soon as the batch completes.
+     *
+     * @param rangeData      the range profile the responders belong to
+     * @param devicesData    the responders of the batch, identified by their probe IDs
+     * @param probeAddresses address of every probe ID
+     * @param jobId          job the range is discovered for, null outside of a job
+     * @return Future of the per address results, failed if the plugin failed
+     */
+    private Future<JsonArray> runRangePlugin(JsonObject rangeData, JsonArray devicesData,
+                                             Map<Integer, String> probeAddresses, String jobId)
+    {
+        return runPlugin(devicesData).compose(pluginOutput ->
+        {
+            if (pluginOutput.isEmpty())
+            {
+                LOGGER.error("Go plugin execution failed");
+
+                return Future.failedFuture("Go plugin execution failed");
+            }
+
+            var addressResults = new JsonArray();
+
+            for (var index = 0; index < pluginOutput.size(); index++)
+            {
+                var pluginResult = pluginOutput.getJsonObject(index);
+
+                var address = probeAddresses.get(pluginResult.getInteger(Constants.ID));
+
+                var addressResult = new JsonObject()
+                        .put(Constants.ID, rangeData.getInteger(Constants.ID))
+                        .put(Constants.IP, address)
+                        .put(Constants.SUCCESS, pluginResult.getBoolean(Constants.SUCCESS))
+                        .put(STEP, pluginResult.getString(STEP));
+
+                DiscoveryResultCache.put(rangeData.copy().put(Constants.IP, address), addressResult);
+
+                addressResults.add(addressResult);
+            }
+
+            streamResults(jobId, addressResults, 0);
+
+            return Future.succeededFuture(addressResults);
+        });
+    }
+
+    /**
+     * Publishes range results and progress of a job right away, does nothing outside of a job.
+     */
+    private void streamResults(String jobId, JsonArray results, int processed)
+    {
+        if (jobId != null)
+        {
+            publishResults(jobId, results, processed);
         }
-        catch (Exception exception)
+    }
+
+    /**
+     * Connects to the port of every address of the range with at most the sweep concurrency of connects in flight.
+     * Addresses are taken from the range as connects complete, and a connected socket is closed at once.
+     *
+     * @param range            addresses to sweep
+     * @param port             port to connect to
+     * @param responderHandler called on the event loop with every address accepting the connection
+     * @param sweptHandler     called on the event loop once per tried address
+     * @return Future completed once every address was tried
+     */
+    private Future<Void> sweep(IpRange range, int port, Consumer<String> responderHandler, Runnable sweptHandler)
+    {
+        var promise = Promise.<Void>promise();
+
+        sweepNext(range.iterator(), port, new AtomicInteger(), responderHandler, sweptHandler, promise);
+
+        return promise.future();
+    }
+
+    private void sweepNext(Iterator<String> addresses, int port, AtomicInteger inFlight,
+                           Consumer<String> responderHandler, Runnable sweptHandler, Promise<Void> promise)
+    {
+        while (inFlight.get() < sweepConcurrency && addresses.hasNext())
         {
-            // Catch any unexpected exceptions
-            LOGGER.error("Unexpected error in discovery request: {}", exception.getMessage());
+            var ip = addresses.next();
 
-            discoveryRequest.fail(500, "Internal server error");
+            inFlight.incrementAndGet();
+
+            netClient.connect(port, ip).onComplete(asyncResult ->
+            {
+                inFlight.decrementAndGet();
+
+                if (asyncResult.succeeded())
+                {
+                    asyncResult.result().close();
+
+                    responderHandler.accept(ip);
+                }
+
+                sweptHandler.run();
+
+                sweepNext(addresses, port, inFlight, responderHandler, sweptHandler, promise);
+            });
+        }
+
+        if (inFlight.get() == 0 && !addresses.hasNext())
+        {
+            promise.tryComplete();
         }
     }
 
+    /**
+     * Runs the SSH check of the Go plugin for one batch on the plugin executor.
+     *
+     * @param devicesData the reachable devices of the batch
+     * @return Future of the plugin output, empty if the plugin failed
+     */
+    private Future<JsonArray> runPlugin(JsonArray devicesData)
+    {
+        return pluginExecutor.executeBlocking(() -> Utils.spawnGoPlugin(devicesData, Constants.DISCOVERY), false);
+    }
+
+    /**
+     * Stores the discovery status of the devices with a single set-based update,
+     * then the per address results of the range profiles, which only range results carry an ip for.
+     *
+     * @param discoveryResponse per device results
+     * @return Future of the update
+     */
+    private Future<JsonObject> updateDiscoveryStatus(JsonArray discoveryResponse)
+    {
+        var statuses = new JsonArray();
+
+        var ids = new JsonArray();
+
+        var rangeIds = new JsonArray();
+
+        var rangeAddresses = new JsonArray();
+
+        var rangeStatuses = new JsonArray();
+
+        var rangeSteps = new JsonArray();
+
+        // Prepare status and id columns for a single set-based update
+        for (var index = 0; index < discoveryResponse.size(); index++)
+        {
+            var responseObject = discoveryResponse.getJsonObject(index);
+
+            statuses.add(responseObject.getBoolean(Constants.SUCCESS));
+
+            ids.add(responseObject.getInteger(Constants.ID));
+
+            if (responseObject.containsKey(Constants.IP))
+            {
+                rangeIds.add(responseObject.getInteger(Constants.ID));
+
+                rangeAddresses.add(responseObject.getString(Constants.IP));
+
+                rangeStatuses.add(responseObject.getBoolean(Constants.SUCCESS));
+
+                rangeSteps.add(responseObject.getString(STEP));
+            }
+        }
+
+        // Send columnar update request to database
+        var update = DATABASE_SERVICE.executeColumnarQuery(new JsonObject()
+                .put(Constants.QUERY, UPDATE_DISCOVERY_RESULT_QUERY)
+                .put(Constants.PARAMS, new JsonArray().add(statuses).add(ids)));
+
+        if (!rangeIds.isEmpty())
+        {
+            update = update.compose(updateResult -> DATABASE_SERVICE.executeColumnarQuery(new JsonObject()
+                    .put(Constants.QUERY, UPDATE_RANGE_RESULTS_QUERY)
+                    .put(Constants.PARAMS, new JsonArray().add(rangeIds).add(rangeAddresses).add(rangeStatuses)
+                            .add(rangeSteps))));
+        }
+
+        return update.onFailure(updateError -> LOGGER.error("Database update failed: {}", updateError.getMessage()));
+    }
+
     /**
      * Wrapper class used to store discovery results including
      * the response array and any error message.
@@ -241,6 +876,22 @@ public class DiscoveryEngine extends AbstractVerticle
                     .onFailure(err -> LOGGER.error("Failed to unregister event bus consumer: {}", err.getMessage()));
         }
 
+        if (jobConsumer != null)
+        {
+            jobConsumer.unregister()
+                    .onFailure(err -> LOGGER.error("Failed to unregister discovery job consumer: {}", err.getMessage()));
+        }
+
+        if (pluginExecutor != null)
+        {
+            pluginExecutor.close();
+        }
+
+        if (netClient != null)
+        {
+            netClient.close();
+        }
+
         LOGGER.info("PollingProcessorEngine stopped.");
 
         stopPromise.complete();
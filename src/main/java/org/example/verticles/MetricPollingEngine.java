@@ -7,28 +7,20 @@ import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.example.cache.AvailabilityCacheEngine;
-import org.example.service.database.Database;
-import org.example.service.database.DatabaseService;
+import org.example.cache.DeviceInventoryCache;
 import org.example.utils.Constants;
-import org.example.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * MetricPollingVerticle handles incoming requests (via EventBus) for metric polling.
- * It filters devices that are marked "UP", fetches their provisioned job & credential data,
+ * It filters devices that are marked "UP", resolves their provisioned job & credential data from the inventory cache,
  * and passes the batch to the PollingProcessor.
  */
 public class MetricPollingEngine extends AbstractVerticle
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(MetricPollingEngine.class);
 
-    // Service proxy for asynchronous database interactions
-    private static final DatabaseService DATABASE_SERVICE = DatabaseService.createProxy(Database.DB_SERVICE_ADDRESS);
-
-    private static final String FETCH_DEVICES_DATA_QUERY = "SELECT provision.id AS id, provision.ip, provision.port, cp.credentials, cp.system_type " +
-            "FROM provision JOIN credential_profiles cp ON provision.credential_profile_id = cp.id WHERE provision.id IN ($1) ORDER BY provision.id";
-
     // Keep reference to the event bus consumer to unregister it on stop
     private MessageConsumer<JsonArray> localConsumer;
 
@@ -54,7 +46,7 @@ public class MetricPollingEngine extends AbstractVerticle
 
     /**
      * Core logic to handle metric polling requests.
-     * Filters device IDs based on UP status, queries DB for details, and forwards valid data to polling processor.
+     * Filters device IDs based on UP status, looks up their details in the inventory cache, and forwards valid data to polling processor.
      */
     private void handleMetricPolling(Message<JsonArray> message)
     {
@@ -72,27 +64,20 @@ public class MetricPollingEngine extends AbstractVerticle
                 return;
             }
 
-            // Step 2: Query the database asynchronously
-            DATABASE_SERVICE.executeQuery(new JsonObject()
-                            .put(Constants.QUERY, Utils.buildJoinQuery(FETCH_DEVICES_DATA_QUERY,filteredDeviceIds.size()))
-                            .put(Constants.PARAMS, filteredDeviceIds))
-                    .onSuccess(result ->
+            // Step 2: Resolve connection details and credentials from the inventory cache
+            DeviceInventoryCache.getDevices(filteredDeviceIds)
+                    .onSuccess(devicesData ->
                     {
-                        if (Boolean.TRUE.equals(result.getBoolean(Constants.SUCCESS)))
+                        if (!devicesData.isEmpty())
+                        {
+                            // Step 3: Send data to PollingProcessor via EventBus
+                            vertx.eventBus().send(Constants.POLLING_PROCESSOR_ADDRESS, devicesData);
+                        }
+                        else
                         {
-                            var devicesData = result.getJsonArray(Constants.DATA);
-
-                            if (!devicesData.isEmpty())
-                            {
-                                // Step 4: Send data to PollingProcessor via EventBus
-                                vertx.eventBus().send(Constants.POLLING_PROCESSOR_ADDRESS, devicesData);
-                            }
-                            else
-                            {
-                                LOGGER.warn("No data found for device ids: {}", filteredDeviceIds);
-                            }
+                            LOGGER.warn("No data found for device ids: {}", filteredDeviceIds);
                         }
-                    }).onFailure(error -> LOGGER.error("Database request failed: {}", error.getMessage()));
+                    }).onFailure(error -> LOGGER.error("Device inventory lookup failed: {}", error.getMessage()));
         }
         catch (Exception exception)
         {
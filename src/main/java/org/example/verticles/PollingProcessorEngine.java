@@ -6,9 +6,9 @@ import io.vertx.core.eventbus.Message;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import org.example.service.database.Database;
-import org.example.service.database.DatabaseService;
+import org.example.cache.MetricsCacheEngine;
 import org.example.utils.Constants;
+import org.example.utils.MetricParser;
 import org.example.utils.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,11 +22,17 @@ public class PollingProcessorEngine extends AbstractVerticle
     // SQL query to insert polled metrics into provisioned_data table
     private static final String QUERY_INSERT_POLLED_RESULTS = """
         INSERT INTO polled_results (provision_id, metrics, polled_at)
-        VALUES ($1, $2, $3)
+        SELECT provision_id, metrics::jsonb, polled_at::timestamptz
+        FROM unnest($1::int[], $2::text[], $3::text[]) AS t(provision_id, metrics, polled_at)
     """;
 
-    // Proxy to interact with the shared DatabaseService
-    private static final DatabaseService DATABASE_SERVICE = DatabaseService.createProxy(Database.DB_SERVICE_ADDRESS);
+    // Typed samples of the known numeric metrics, values of metrics missing from the dictionary are dropped by the join
+    private static final String QUERY_INSERT_METRIC_SAMPLES = """
+        INSERT INTO metric_samples (provision_id, metric_id, polled_at, value)
+        SELECT t.provision_id, d.id, t.polled_at::timestamptz, t.value
+        FROM unnest($1::int[], $2::text[], $3::text[], $4::float8[]) AS t(provision_id, metric, polled_at, value)
+        JOIN metric_dictionary d ON d.name = t.metric
+    """;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PollingProcessorEngine.class);
 
@@ -42,6 +48,8 @@ public class PollingProcessorEngine extends AbstractVerticle
         {
             localConsumer = vertx.eventBus().localConsumer(Constants.POLLING_PROCESSOR_ADDRESS, this::handlePolling);
 
+            MetricsCacheEngine.load();
+
             startPromise.complete();
         }
         catch (Exception exception)
@@ -77,23 +85,73 @@ public class PollingProcessorEngine extends AbstractVerticle
 
                     try
                     {
-                        var batchParams = new JsonArray();
+                        var provisionIds = new JsonArray();
+
+                        var metrics = new JsonArray();
+
+                        var polledAt = new JsonArray();
+
+                        var sampleProvisionIds = new JsonArray();
+
+                        var sampleMetrics = new JsonArray();
+
+                        var samplePolledAt = new JsonArray();
+
+                        var sampleValues = new JsonArray();
 
                         for (var index = 0; index < pluginOutput.size(); index++)
                         {
                             var deviceResult = pluginOutput.getJsonObject(index);
 
-                            batchParams.add(new JsonArray()
-                                    .add(deviceResult.getInteger(Constants.ID))
-                                    .add(deviceResult.getJsonObject(Constants.METRICS))
-                                    .add(deviceResult.getString(Constants.POLLED_AT)));
+                            var deviceMetrics = deviceResult.getJsonObject(Constants.METRICS);
+
+                            provisionIds.add(deviceResult.getInteger(Constants.ID));
+
+                            metrics.add(deviceMetrics);
+
+                            polledAt.add(deviceResult.getString(Constants.POLLED_AT));
+
+                            if (deviceMetrics == null)
+                            {
+                                continue;
+                            }
+
+                            MetricsCacheEngine.setLatestMetrics(deviceResult.getInteger(Constants.ID), deviceMetrics,
+                                    deviceResult.getString(Constants.POLLED_AT));
+
+                            // Parse the numeric metrics once at ingest
+                            for (var metric : deviceMetrics.fieldNames())
+                            {
+                                var value = MetricParser.parse(metric, deviceMetrics.getValue(metric));
+
+                                if (value != null)
+                                {
+                                    sampleProvisionIds.add(deviceResult.getInteger(Constants.ID));
+
+                                    sampleMetrics.add(metric);
+
+                                    samplePolledAt.add(deviceResult.getString(Constants.POLLED_AT));
+
+                                    sampleValues.add(value);
+                                }
+                            }
                         }
 
-                        DATABASE_SERVICE.executeQuery(new JsonObject()
-                                        .put(Constants.QUERY, QUERY_INSERT_POLLED_RESULTS)
-                                        .put(Constants.PARAMS, batchParams))
-                                        .onFailure(error -> LOGGER.error("Database service failed: {}",
-                                                error.getMessage()));
+                        // Results are batched and written by the result writer
+                        vertx.eventBus().send(Constants.RESULT_WRITER_ADDRESS, new JsonObject()
+                                .put(Constants.QUERY, QUERY_INSERT_POLLED_RESULTS)
+                                .put(Constants.PARAMS, new JsonArray().add(provisionIds).add(metrics).add(polledAt)));
+
+                        if (!sampleValues.isEmpty())
+                        {
+                            vertx.eventBus().send(Constants.RESULT_WRITER_ADDRESS, new JsonObject()
+                                    .put(Constants.QUERY, QUERY_INSERT_METRIC_SAMPLES)
+                                    .put(Constants.PARAMS, new JsonArray()
+                                            .add(sampleProvisionIds)
+                                            .add(sampleMetrics)
+                                            .add(samplePolledAt)
+                                            .add(sampleValues)));
+                        }
                     }
                     catch (Exception exception)
                     {
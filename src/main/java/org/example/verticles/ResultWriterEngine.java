@@ -0,0 +1,474 @@
+package org.example.verticles;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.utils.Constants;
+import org.example.utils.MotaDataConfigUtil;
+import org.example.utils.ResultSpool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-behind verticle for polling results. Result batches arrive on the event bus in columnar form,
+ * are accumulated in a bounded buffer per target statement and flushed to the database
+ * once the buffer reaches the flush size or gets older than the flush interval.
+ * Batches that fail to flush or do not fit in the buffer are appended to the {@link ResultSpool}
+ * and replayed later by the {@link SpoolReplayEngine}. Rows the database rejects for their data
+ * would fail the same way on replay, the {@link BatchWriter} isolates them and only they go to the spool's dead letter file.
+ */
+public class ResultWriterEngine extends AbstractVerticle
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultWriterEngine.class);
+
+    // Config keys
+    private static final String FLUSH_SIZE = "result.writer.flush.size";
+    private static final String FLUSH_INTERVAL = "result.writer.flush.interval.in.milliseconds";
+    private static final String MAX_BUFFERED_ROWS = "result.writer.max.buffered.rows";
+
+    // Defaults
+    private static final int DEFAULT_FLUSH_SIZE = 5000;
+    private static final long DEFAULT_FLUSH_INTERVAL = 5000;
+    private static final int DEFAULT_MAX_BUFFERED_ROWS = 100_000;
+    private static final long FLUSH_CHECK_INTERVAL = 1000;
+
+    // Metric keys
+    private static final String QUEUE_DEPTH = "queue.depth";
+    private static final String TARGETS = "targets";
+    private static final String FLUSHES = "flushes";
+    private static final String FAILED_FLUSHES = "failed.flushes";
+    private static final String ROWS_WRITTEN = "rows.written";
+    private static final String ROWS_SPOOLED = "rows.spooled";
+    private static final String ROWS_DROPPED = "rows.dropped";
+    private static final String ROWS_DEAD_LETTERED = "rows.dead.lettered";
+    private static final String LAST_FLUSH_LATENCY = "last.flush.latency.ms";
+    private static final String MAX_FLUSH_LATENCY = "max.flush.latency.ms";
+    private static final String AVG_FLUSH_LATENCY = "avg.flush.latency.ms";
+
+    private final int flushSize = MotaDataConfigUtil.getConfig().getInteger(FLUSH_SIZE, DEFAULT_FLUSH_SIZE);
+
+    private final long flushInterval = MotaDataConfigUtil.getConfig().getLong(FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL);
+
+    private final int maxBufferedRows = MotaDataConfigUtil.getConfig().getInteger(MAX_BUFFERED_ROWS, DEFAULT_MAX_BUFFERED_ROWS);
+
+    // Pending rows per target statement
+    private final Map<String, WriteBuffer> buffers = new HashMap<>();
+
+    // Flushes and spool appends not completed yet, stop waits for them
+    private final Set<Future<Void>> pendingWrites = new HashSet<>();
+
+    private MessageConsumer<JsonObject> localConsumer;
+
+    private MessageConsumer<JsonObject> metricsConsumer;
+
+    private long flushTimerId = -1;
+
+    private long flushes;
+
+    private long failedFlushes;
+
+    private long rowsWritten;
+
+    private long rowsSpooled;
+
+    private long rowsDropped;
+
+    private long rowsDeadLettered;
+
+    private long lastFlushLatency;
+
+    private long maxFlushLatency;
+
+    private long totalFlushLatency;
+
+    /**
+     * Registers the result consumer, the metrics consumer and the periodic age based flush check.
+     */
+    @Override
+    public void start(Promise<Void> startPromise)
+    {
+        try
+        {
+            localConsumer = vertx.eventBus().localConsumer(Constants.RESULT_WRITER_ADDRESS, this::handleResults);
+
+            metricsConsumer = vertx.eventBus().localConsumer(Constants.RESULT_WRITER_METRICS_ADDRESS,
+                    message -> message.reply(getMetrics()));
+
+            flushTimerId = vertx.setPeriodic(FLUSH_CHECK_INTERVAL, timerId -> flushExpired());
+
+            startPromise.complete();
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Error in deploying result writer engine: {}", exception.getMessage());
+
+            startPromise.fail(exception);
+        }
+    }
+
+    /**
+     * Appends an incoming columnar batch to the buffer of its target statement
+     * and flushes right away when the flush size is reached.
+     *
+     * @param message JsonObject holding the insert statement and its parameter columns
+     */
+    private void handleResults(Message<JsonObject> message)
+    {
+        try
+        {
+            var query = message.body().getString(Constants.QUERY);
+
+            var columns = message.body().getJsonArray(Constants.PARAMS);
+
+            if (query == null || columns == null || columns.isEmpty())
+            {
+                LOGGER.warn("Ignoring malformed result batch");
+
+                return;
+            }
+
+            var buffer = buffers.computeIfAbsent(query, key -> new WriteBuffer(columns.size()));
+
+            var rows = columns.getJsonArray(0).size();
+
+            if (buffer.rows + rows > maxBufferedRows)
+            {
+                LOGGER.warn("Result buffer full ({} rows), spooling {} rows", buffer.rows, rows);
+
+                spool(query, columns, rows);
+
+                return;
+            }
+
+            buffer.append(columns, rows);
+
+            if (buffer.rows >= flushSize)
+            {
+                flush(query, buffer);
+            }
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Error in buffering results: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Flushes every buffer whose oldest row has waited longer than the flush interval.
+     */
+    private void flushExpired()
+    {
+        try
+        {
+            var currentTime = System.currentTimeMillis();
+
+            buffers.forEach((query, buffer) ->
+            {
+                if (buffer.rows > 0 && currentTime - buffer.createdAt >= flushInterval)
+                {
+                    flush(query, buffer);
+                }
+            });
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Error in flushing result buffers: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Writes the buffered rows of a statement in one columnar query.
+     * Only one flush per statement is in flight, rows arriving meanwhile stay buffered.
+     * On failure the rows are spooled to disk so they survive until the database is back,
+     * rows rejected for their data are dead lettered one by one.
+     *
+     * @param query  target statement
+     * @param buffer buffer holding its pending rows
+     * @return Future completed once the rows are written or spooled
+     */
+    private Future<Void> flush(String query, WriteBuffer buffer)
+    {
+        if (buffer.flushing || buffer.rows == 0)
+        {
+            return Future.succeededFuture();
+        }
+
+        var columns = buffer.columns;
+
+        var rows = buffer.rows;
+
+        buffer.reset();
+
+        buffer.flushing = Constants.TRUE;
+
+        var startTime = System.currentTimeMillis();
+
+        return track(BatchWriter.write(query, columns)
+                .compose(outcome ->
+                {
+                    buffer.flushing = Constants.FALSE;
+
+                    var latency = System.currentTimeMillis() - startTime;
+
+                    flushes++;
+
+                    lastFlushLatency = latency;
+
+                    maxFlushLatency = Math.max(maxFlushLatency, latency);
+
+                    totalFlushLatency += latency;
+
+                    rowsWritten += outcome.written();
+
+                    if (outcome.written() == rows)
+                    {
+                        return Future.succeededFuture();
+                    }
+
+                    failedFlushes++;
+
+                    var writes = new ArrayList<Future<Void>>();
+
+                    if (!outcome.rejected().isEmpty())
+                    {
+                        LOGGER.error("Database rejected {} of {} rows, dead lettering them: {}", outcome.rejected().size(), rows,
+                                outcome.rejected().get(0).reason());
+                    }
+
+                    for (var rejected : outcome.rejected())
+                    {
+                        writes.add(deadLetter(query, rejected.columns(), 1, rejected.reason()));
+                    }
+
+                    if (outcome.cause() != null)
+                    {
+                        LOGGER.error("Failed to flush {} rows, spooling: {}", rows - outcome.written() - outcome.rejected().size(),
+                                outcome.cause().getMessage());
+                    }
+
+                    for (var unwritten : outcome.unwritten())
+                    {
+                        writes.add(spool(query, unwritten, BatchWriter.rows(unwritten)));
+                    }
+
+                    return Future.join(writes).<Void>mapEmpty();
+                }));
+    }
+
+    /**
+     * Appends a batch to the local disk spool on a worker thread. Rows are only lost if the spool itself fails.
+     *
+     * @param query   target statement
+     * @param columns parameter columns of the batch
+     * @param rows    number of rows in the batch
+     * @return Future completed once the batch is spooled or dropped
+     */
+    private Future<Void> spool(String query, JsonArray columns, int rows)
+    {
+        return track(vertx.executeBlocking(() ->
+        {
+            ResultSpool.getInstance().append(new JsonObject()
+                    .put(Constants.QUERY, query)
+                    .put(Constants.PARAMS, columns));
+
+            return rows;
+        }, true).transform(asyncResult ->
+        {
+            if (asyncResult.succeeded())
+            {
+                rowsSpooled += rows;
+            }
+            else
+            {
+                rowsDropped += rows;
+
+                LOGGER.error("Failed to spool {} rows, dropping them: {}", rows, asyncResult.cause().getMessage());
+            }
+
+            return Future.succeededFuture();
+        }));
+    }
+
+    /**
+     * Moves rows the database rejected for good to the spool's dead letter file on a worker thread.
+     *
+     * @param query   target statement
+     * @param columns parameter columns of the batch
+     * @param rows    number of rows in the batch
+     * @param reason  error the database failed the batch with
+     * @return Future completed once the batch is dead lettered or dropped
+     */
+    private Future<Void> deadLetter(String query, JsonArray columns, int rows, String reason)
+    {
+        return track(vertx.executeBlocking(() ->
+        {
+            ResultSpool.getInstance().deadLetter(new JsonObject()
+                    .put(Constants.QUERY, query)
+                    .put(Constants.PARAMS, columns), reason);
+
+            return rows;
+        }, true).transform(asyncResult ->
+        {
+            if (asyncResult.succeeded())
+            {
+                rowsDeadLettered += rows;
+            }
+            else
+            {
+                rowsDropped += rows;
+
+                LOGGER.error("Failed to dead letter {} rows, dropping them: {}", rows, asyncResult.cause().getMessage());
+            }
+
+            return Future.succeededFuture();
+        }));
+    }
+
+    /**
+     * Keeps a write in the pending set until it completes.
+     */
+    private Future<Void> track(Future<Void> write)
+    {
+        pendingWrites.add(write);
+
+        write.onComplete(asyncResult -> pendingWrites.remove(write));
+
+        return write;
+    }
+
+    /**
+     * Builds a snapshot of the writer metrics.
+     *
+     * @return JsonObject with queue depth per target and flush statistics
+     */
+    private JsonObject getMetrics()
+    {
+        var targets = new JsonObject();
+
+        var queueDepth = 0;
+
+        for (var entry : buffers.entrySet())
+        {
+            targets.put(entry.getKey().trim(), entry.getValue().rows);
+
+            queueDepth += entry.getValue().rows;
+        }
+
+        return new JsonObject()
+                .put(QUEUE_DEPTH, queueDepth)
+                .put(TARGETS, targets)
+                .put(FLUSHES, flushes)
+                .put(FAILED_FLUSHES, failedFlushes)
+                .put(ROWS_WRITTEN, rowsWritten)
+                .put(ROWS_SPOOLED, rowsSpooled)
+                .put(ROWS_DROPPED, rowsDropped)
+                .put(ROWS_DEAD_LETTERED, rowsDeadLettered)
+                .put(LAST_FLUSH_LATENCY, lastFlushLatency)
+                .put(MAX_FLUSH_LATENCY, maxFlushLatency)
+                .put(AVG_FLUSH_LATENCY, flushes == 0 ? 0 : totalFlushLatency / flushes);
+    }
+
+    /**
+     * Pending rows of one target statement, kept as one JsonArray per column.
+     */
+    private static final class WriteBuffer
+    {
+        private final int width;
+
+        private JsonArray columns;
+
+        private int rows;
+
+        private long createdAt;
+
+        private boolean flushing;
+
+        private WriteBuffer(int width)
+        {
+            this.width = width;
+
+            reset();
+        }
+
+        private void append(JsonArray batch, int batchRows)
+        {
+            if (rows == 0)
+            {
+                createdAt = System.currentTimeMillis();
+            }
+
+            for (var index = 0; index < width; index++)
+            {
+                columns.getJsonArray(index).addAll(batch.getJsonArray(index));
+            }
+
+            rows += batchRows;
+        }
+
+        private void reset()
+        {
+            columns = new JsonArray();
+
+            for (var index = 0; index < width; index++)
+            {
+                columns.add(new JsonArray());
+            }
+
+            rows = 0;
+
+            createdAt = 0;
+        }
+    }
+
+    /**
+     * Unregisters the consumers and flushes whatever is still buffered.
+     * Rows buffered behind a flush in flight are flushed once it completed,
+     * the verticle only stops after every flush and fallback spool append finished, so no row is cut off.
+     */
+    @Override
+    public void stop(Promise<Void> stopPromise)
+    {
+        if (flushTimerId != -1)
+        {
+            vertx.cancelTimer(flushTimerId);
+        }
+
+        if (localConsumer != null)
+        {
+            localConsumer.unregister()
+                    .onSuccess(v -> LOGGER.info("ResultWriterEngine event bus consumer unregistered."))
+                    .onFailure(err -> LOGGER.error("Failed to unregister event bus consumer: {}", err.getMessage()));
+        }
+
+        if (metricsConsumer != null)
+        {
+            metricsConsumer.unregister();
+        }
+
+        Future.join(new ArrayList<>(pendingWrites))
+                .transform(pendingResult ->
+                {
+                    var finalFlushes = new ArrayList<Future<Void>>();
+
+                    buffers.forEach((query, buffer) -> finalFlushes.add(flush(query, buffer)));
+
+                    return Future.join(finalFlushes);
+                })
+                .onComplete(asyncResult ->
+                {
+                    LOGGER.info("ResultWriterEngine flushed pending results.");
+
+                    stopPromise.complete();
+                });
+    }
+}
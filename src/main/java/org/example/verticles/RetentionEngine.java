@@ -0,0 +1,125 @@
+package org.example.verticles;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.service.database.Database;
+import org.example.service.database.DatabaseService;
+import org.example.utils.Constants;
+import org.example.utils.MotaDataConfigUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Background verticle maintaining the daily partitions of the time partitioned result tables.
+ * Partitions are created a few days ahead so inserts never land in the default partition,
+ * and partitions older than the retention period are dropped, which costs one DDL per day instead of a mass delete.
+ * Expired rows of the default partition are deleted as well, and rows left there are reported as a warning.
+ */
+public class RetentionEngine extends AbstractVerticle
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetentionEngine.class);
+
+    private static final DatabaseService DATABASE_SERVICE = DatabaseService.createProxy(Database.DB_SERVICE_ADDRESS);
+
+    private static final String MAINTAIN_PARTITIONS_QUERY = "SELECT created, dropped, default_rows FROM nms_maintain_partitions($1, $2, $3)";
+
+    private static final String CREATED = "created";
+
+    private static final String DROPPED = "dropped";
+
+    private static final String DEFAULT_ROWS = "default_rows";
+
+    private static final List<String> PARTITIONED_TABLES = List.of(Constants.POLLED_RESULTS_TABLE,
+            Constants.AVAILABILITY_POLLING_RESULTS_TABLE, Constants.METRIC_SAMPLES_TABLE);
+
+    // Config keys
+    private static final String RETENTION_DAYS = "result.retention.days";
+    private static final String PARTITIONS_AHEAD_DAYS = "result.partitions.ahead.days";
+    private static final String RETENTION_INTERVAL = "result.retention.interval.in.milliseconds";
+
+    // Defaults
+    private static final int DEFAULT_RETENTION_DAYS = 30;
+    private static final int DEFAULT_PARTITIONS_AHEAD_DAYS = 7;
+    private static final long DEFAULT_RETENTION_INTERVAL = 3_600_000;
+
+    private final int retentionDays = MotaDataConfigUtil.getConfig().getInteger(RETENTION_DAYS, DEFAULT_RETENTION_DAYS);
+
+    private final int aheadDays = MotaDataConfigUtil.getConfig().getInteger(PARTITIONS_AHEAD_DAYS, DEFAULT_PARTITIONS_AHEAD_DAYS);
+
+    private long retentionTimerId = -1;
+
+    /**
+     * Runs the partition maintenance once right away and then periodically.
+     */
+    @Override
+    public void start(Promise<Void> startPromise)
+    {
+        try
+        {
+            maintainPartitions();
+
+            retentionTimerId = vertx.setPeriodic(MotaDataConfigUtil.getConfig()
+                    .getLong(RETENTION_INTERVAL, DEFAULT_RETENTION_INTERVAL), timerId -> maintainPartitions());
+
+            startPromise.complete();
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Error in deploying retention engine: {}", exception.getMessage());
+
+            startPromise.fail(exception);
+        }
+    }
+
+    /**
+     * Creates upcoming partitions and drops expired ones for every partitioned table on the maintenance pool.
+     */
+    private void maintainPartitions()
+    {
+        for (var table : PARTITIONED_TABLES)
+        {
+            DATABASE_SERVICE.executeQuery(new JsonObject()
+                            .put(Constants.QUERY, MAINTAIN_PARTITIONS_QUERY)
+                            .put(Constants.PARAMS, new JsonArray().add(table).add(retentionDays).add(aheadDays))
+                            .put(Constants.WORKLOAD, Constants.WORKLOAD_MAINTENANCE))
+                    .onSuccess(result ->
+                    {
+                        var data = result.getJsonArray(Constants.DATA, new JsonArray());
+
+                        if (!data.isEmpty())
+                        {
+                            var maintenance = data.getJsonObject(0);
+
+                            LOGGER.info("Partitions of {}: {} created, {} dropped", table,
+                                    maintenance.getInteger(CREATED), maintenance.getInteger(DROPPED));
+
+                            // Rows in the default partition block creating the partition of their day
+                            if (maintenance.getLong(DEFAULT_ROWS, 0L) > 0)
+                            {
+                                LOGGER.warn("Default partition of {} holds {} rows outside the daily partitions", table,
+                                        maintenance.getLong(DEFAULT_ROWS));
+                            }
+                        }
+                    })
+                    .onFailure(error -> LOGGER.error("Error in maintaining partitions of {}: {}", table, error.getMessage()));
+        }
+    }
+
+    /**
+     * Cancels the maintenance timer.
+     */
+    @Override
+    public void stop()
+    {
+        if (retentionTimerId != -1)
+        {
+            vertx.cancelTimer(retentionTimerId);
+        }
+
+        LOGGER.info("RetentionEngine stopped.");
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.verticles;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.example.service.database.Database;
+import org.example.service.database.DatabaseService;
+import org.example.utils.Constants;
+import org.example.utils.MotaDataConfigUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background verticle downsampling the typed metric samples into hourly and daily rollups.
+ * Each run recomputes the buckets of a trailing lateness window from the samples and merges the samples past
+ * the stored watermark into older buckets, so samples whose insert commits late are still counted, once,
+ * and long range history can be served from the rollups. A sample committing more than the lateness window
+ * minus the rollup interval after it was polled is left out of the rollups.
+ */
+public class RollupEngine extends AbstractVerticle
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(RollupEngine.class);
+
+    private static final DatabaseService DATABASE_SERVICE = DatabaseService.createProxy(Database.DB_SERVICE_ADDRESS);
+
+    private static final String ROLLUP_METRICS_QUERY = "SELECT nms_rollup_metrics($1) AS processed";
+
+    private static final String PROCESSED = "processed";
+
+    // Config keys
+    private static final String ROLLUP_INTERVAL = "metric.rollup.interval.in.milliseconds";
+
+    private static final String ROLLUP_LATENESS = "metric.rollup.lateness.in.seconds";
+
+    // Defaults
+    private static final long DEFAULT_ROLLUP_INTERVAL = 300_000;
+
+    private static final int DEFAULT_ROLLUP_LATENESS = 3600;
+
+    private long rollupTimerId = -1;
+
+    private boolean rollingUp;
+
+    /**
+     * Starts the periodic rollup.
+     */
+    @Override
+    public void start(Promise<Void> startPromise)
+    {
+        try
+        {
+            rollupTimerId = vertx.setPeriodic(MotaDataConfigUtil.getConfig()
+                    .getLong(ROLLUP_INTERVAL, DEFAULT_ROLLUP_INTERVAL), timerId -> rollup());
+
+            startPromise.complete();
+        }
+        catch (Exception exception)
+        {
+            LOGGER.error("Error in deploying rollup engine: {}", exception.getMessage());
+
+            startPromise.fail(exception);
+        }
+    }
+
+    /**
+     * Runs one incremental rollup on the maintenance pool unless the previous one is still running.
+     */
+    private void rollup()
+    {
+        if (rollingUp)
+        {
+            return;
+        }
+
+        rollingUp = Constants.TRUE;
+
+        DATABASE_SERVICE.executeQuery(new JsonObject()
+                        .put(Constants.QUERY, ROLLUP_METRICS_QUERY)
+                        .put(Constants.PARAMS, new JsonArray()
+                                .add(MotaDataConfigUtil.getConfig().getInteger(ROLLUP_LATENESS, DEFAULT_ROLLUP_LATENESS)))
+                        .put(Constants.WORKLOAD, Constants.WORKLOAD_MAINTENANCE))
+                .onComplete(asyncResult ->
+                {
+                    rollingUp = Constants.FALSE;
+
+                    if (asyncResult.succeeded())
+                    {
+                        var data = asyncResult.result().getJsonArray(Constants.DATA, new JsonArray());
+
+                        if (!data.isEmpty())
+                        {
+                            LOGGER.debug("Rolled up {} metric samples", data.getJsonObject(0).getLong(PROCESSED));
+                        }
+                    }
+                    else
+                    {
+                        LOGGER.error("Error in rolling up metrics: {}", asyncResult.cause().getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Cancels the rollup timer.
+     */
+    @Override
+    public void stop()
+    {
+        if (rollupTimerId != -1)
+        {
+            vertx.cancelTimer(rollupTimerId);
+        }
+
+        LOGGER.info("RollupEngine stopped.");
+    }
+}
@@ -0,0 +1,179 @@
+package org.example.verticles;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import org.example.utils.Constants;
+import org.example.utils.MotaDataConfigUtil;
+import org.example.utils.ResultSpool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Background verticle that drains the {@link ResultSpool} back into the database.
+ * Batches are replayed one at a time in append order, a batch is only consumed once its insert succeeded.
+ * Rows the database rejects for their data, a constraint violation or a bad cast, are isolated by the {@link BatchWriter}
+ * and moved to the dead letter file, the rest of the batch is written and replay goes on past it.
+ * Any other failure means the database is unavailable, replay stops and is retried on the next tick.
+ */
+public class SpoolReplayEngine extends AbstractVerticle
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpoolReplayEngine.class);
+
+    private static final String REPLAY_INTERVAL = "result.spool.replay.interval.in.milliseconds";
+
+    private static final long DEFAULT_REPLAY_INTERVAL = 10_000;
+
+    private long replayTimerId = -1;
+
+    private boolean replaying;
+
+    /**
+     * Opens the spool and starts the periodic replay.
+     */
+    @Override
+    public void start(Promise<Void> startPromise)
+    {
+        vertx.executeBlocking(ResultSpool::getInstance, false, asyncResult ->
+        {
+            if (asyncResult.succeeded())
+            {
+                replayTimerId = vertx.setPeriodic(MotaDataConfigUtil.getConfig()
+                        .getLong(REPLAY_INTERVAL, DEFAULT_REPLAY_INTERVAL), timerId -> replay());
+
+                startPromise.complete();
+            }
+            else
+            {
+                LOGGER.error("Error in opening result spool: {}", asyncResult.cause().getMessage());
+
+                startPromise.fail(asyncResult.cause());
+            }
+        });
+    }
+
+    /**
+     * Starts a replay run unless one is already in progress.
+     */
+    private void replay()
+    {
+        if (!replaying)
+        {
+            replaying = Constants.TRUE;
+
+            replayNext();
+        }
+    }
+
+    /**
+     * Replays the oldest spooled batch and continues with the next one once it is committed.
+     */
+    private void replayNext()
+    {
+        vertx.executeBlocking(() ->
+        {
+            var batch = ResultSpool.getInstance().peek();
+
+            return batch == null ? new JsonObject() : batch;
+
+        }, true, peekResult ->
+        {
+            if (peekResult.failed())
+            {
+                LOGGER.error("Error in reading result spool: {}", peekResult.cause().getMessage());
+
+                replaying = Constants.FALSE;
+
+                return;
+            }
+
+            var batch = peekResult.result();
+
+            if (batch.isEmpty())
+            {
+                replaying = Constants.FALSE;
+
+                return;
+            }
+
+            var query = batch.getString(Constants.QUERY);
+
+            BatchWriter.write(query, batch.getJsonArray(Constants.PARAMS)).onSuccess(outcome ->
+            {
+                if (outcome.cause() != null && !outcome.split())
+                {
+                    LOGGER.warn("Spool replay paused, database still unavailable: {}", outcome.cause().getMessage());
+
+                    replaying = Constants.FALSE;
+
+                    return;
+                }
+
+                if (!outcome.rejected().isEmpty())
+                {
+                    LOGGER.error("Spooled batch had {} rows rejected, moving them to the dead letter file: {}",
+                            outcome.rejected().size(), outcome.rejected().get(0).reason());
+                }
+
+                // Parts left by a failure during the split go back to the spool, the written ones must not be replayed again
+                commitAndContinue(() ->
+                {
+                    var spool = ResultSpool.getInstance();
+
+                    for (var unwritten : outcome.unwritten())
+                    {
+                        spool.append(new JsonObject().put(Constants.QUERY, query).put(Constants.PARAMS, unwritten));
+                    }
+
+                    for (var rejected : outcome.rejected())
+                    {
+                        spool.deadLetter(new JsonObject().put(Constants.QUERY, query).put(Constants.PARAMS, rejected.columns()),
+                                rejected.reason());
+                    }
+
+                    spool.commit();
+
+                    return null;
+                });
+            });
+        });
+    }
+
+    /**
+     * Consumes the replayed batch on a worker thread and continues with the next one.
+     *
+     * @param commit spool update consuming the batch
+     */
+    private void commitAndContinue(Callable<Void> commit)
+    {
+        vertx.executeBlocking(commit, true).onComplete(commitResult ->
+        {
+            if (commitResult.succeeded())
+            {
+                replayNext();
+            }
+            else
+            {
+                LOGGER.error("Error in committing result spool: {}", commitResult.cause().getMessage());
+
+                replaying = Constants.FALSE;
+            }
+        });
+    }
+
+    /**
+     * Cancels the replay timer.
+     */
+    @Override
+    public void stop()
+    {
+        if (replayTimerId != -1)
+        {
+            vertx.cancelTimer(replayTimerId);
+        }
+
+        LOGGER.info("SpoolReplayEngine stopped.");
+    }
+}
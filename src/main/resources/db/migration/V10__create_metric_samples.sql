@@ -0,0 +1,112 @@
+-- Numeric metrics known to the platform, values are parsed at ingest into the unit listed here
+CREATE TABLE IF NOT EXISTS metric_dictionary (
+    id SERIAL PRIMARY KEY,
+    name TEXT UNIQUE NOT NULL,
+    unit TEXT NOT NULL
+);
+
+INSERT INTO metric_dictionary (name, unit) VALUES
+    ('cpu', 'percent'),
+    ('memory', 'gigabytes'),
+    ('disk', 'gigabytes'),
+    ('processes', 'count'),
+    ('uptime', 'seconds')
+ON CONFLICT (name) DO NOTHING;
+
+-- One row per device, metric and poll, partitioned by day like the raw results
+CREATE TABLE IF NOT EXISTS metric_samples (
+    id BIGINT GENERATED ALWAYS AS IDENTITY,
+    provision_id INT NOT NULL REFERENCES provision(id) ON DELETE CASCADE,
+    metric_id INT NOT NULL REFERENCES metric_dictionary(id),
+    polled_at TIMESTAMPTZ NOT NULL,
+    value DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (id, polled_at)
+) PARTITION BY RANGE (polled_at);
+
+CREATE INDEX IF NOT EXISTS metric_samples_provision_id_metric_id_polled_at_idx ON metric_samples (provision_id, metric_id, polled_at);
+
+CREATE INDEX IF NOT EXISTS metric_samples_metric_id_polled_at_idx ON metric_samples (metric_id, polled_at);
+
+CREATE TABLE IF NOT EXISTS metric_samples_default PARTITION OF metric_samples DEFAULT;
+
+SELECT nms_create_partitions('metric_samples',
+       COALESCE((min(polled_at) AT TIME ZONE 'UTC')::date, (now() AT TIME ZONE 'UTC')::date),
+       (now() AT TIME ZONE 'UTC')::date + 7)
+FROM polled_results;
+
+-- Backfill from the JSON documents, rows the rollup already consumed first so the new watermark can skip them
+INSERT INTO metric_samples (provision_id, metric_id, polled_at, value)
+SELECT r.provision_id, d.id, r.polled_at, nms_numeric_value(m.value)
+FROM polled_results r
+JOIN LATERAL jsonb_each_text(r.metrics) m ON TRUE
+JOIN metric_dictionary d ON d.name = m.key
+WHERE r.id <= (SELECT last_id FROM rollup_watermarks WHERE name = 'polled_results')
+  AND nms_numeric_value(m.value) IS NOT NULL
+ORDER BY r.id;
+
+INSERT INTO rollup_watermarks (name, last_id, next_id)
+SELECT 'metric_samples', COALESCE(max(id), 0), COALESCE(max(id), 0) FROM metric_samples;
+
+INSERT INTO metric_samples (provision_id, metric_id, polled_at, value)
+SELECT r.provision_id, d.id, r.polled_at, nms_numeric_value(m.value)
+FROM polled_results r
+JOIN LATERAL jsonb_each_text(r.metrics) m ON TRUE
+JOIN metric_dictionary d ON d.name = m.key
+WHERE r.id > (SELECT last_id FROM rollup_watermarks WHERE name = 'polled_results')
+  AND nms_numeric_value(m.value) IS NOT NULL
+ORDER BY r.id;
+
+DELETE FROM rollup_watermarks WHERE name = 'polled_results';
+
+-- Rollups now aggregate the typed samples instead of extracting values from the JSON documents
+CREATE OR REPLACE FUNCTION nms_rollup_metrics() RETURNS BIGINT AS $$
+DECLARE
+    from_id BIGINT;
+    to_id BIGINT;
+    processed BIGINT;
+BEGIN
+    SELECT last_id, next_id INTO from_id, to_id FROM rollup_watermarks WHERE name = 'metric_samples' FOR UPDATE;
+
+    WITH numeric_samples AS (
+        SELECT s.provision_id, md.name AS metric, s.polled_at, s.value
+        FROM metric_samples s
+        JOIN metric_dictionary md ON md.id = s.metric_id
+        WHERE s.id > from_id AND s.id <= to_id
+    ),
+    hourly AS (
+        INSERT INTO metric_rollups_hourly AS h (provision_id, metric, bucket, min_value, max_value, sum_value, samples, last_value, last_at)
+        SELECT provision_id, metric, date_trunc('hour', polled_at, 'UTC'), min(value), max(value), sum(value), count(*),
+               (array_agg(value ORDER BY polled_at DESC))[1], max(polled_at)
+        FROM numeric_samples
+        GROUP BY provision_id, metric, date_trunc('hour', polled_at, 'UTC')
+        ON CONFLICT (provision_id, metric, bucket) DO UPDATE SET
+            min_value = LEAST(h.min_value, EXCLUDED.min_value),
+            max_value = GREATEST(h.max_value, EXCLUDED.max_value),
+            sum_value = h.sum_value + EXCLUDED.sum_value,
+            samples = h.samples + EXCLUDED.samples,
+            last_value = CASE WHEN EXCLUDED.last_at >= h.last_at THEN EXCLUDED.last_value ELSE h.last_value END,
+            last_at = GREATEST(h.last_at, EXCLUDED.last_at)
+        RETURNING 1
+    )
+    INSERT INTO metric_rollups_daily AS d (provision_id, metric, bucket, min_value, max_value, sum_value, samples, last_value, last_at)
+    SELECT provision_id, metric, date_trunc('day', polled_at, 'UTC'), min(value), max(value), sum(value), count(*),
+           (array_agg(value ORDER BY polled_at DESC))[1], max(polled_at)
+    FROM numeric_samples
+    GROUP BY provision_id, metric, date_trunc('day', polled_at, 'UTC')
+    ON CONFLICT (provision_id, metric, bucket) DO UPDATE SET
+        min_value = LEAST(d.min_value, EXCLUDED.min_value),
+        max_value = GREATEST(d.max_value, EXCLUDED.max_value),
+        sum_value = d.sum_value + EXCLUDED.sum_value,
+        samples = d.samples + EXCLUDED.samples,
+        last_value = CASE WHEN EXCLUDED.last_at >= d.last_at THEN EXCLUDED.last_value ELSE d.last_value END,
+        last_at = GREATEST(d.last_at, EXCLUDED.last_at);
+
+    processed := GREATEST(to_id - from_id, 0);
+
+    UPDATE rollup_watermarks
+    SET last_id = to_id, next_id = GREATEST(to_id, (SELECT COALESCE(max(id), 0) FROM metric_samples))
+    WHERE name = 'metric_samples';
+
+    RETURN processed;
+END;
+$$ LANGUAGE plpgsql;
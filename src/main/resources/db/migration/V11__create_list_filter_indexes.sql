@@ -0,0 +1,13 @@
+-- Byte wise ordered copies of ip, list endpoints match ip prefixes as a COLLATE "C" range
+CREATE INDEX IF NOT EXISTS discovery_profiles_ip_prefix_idx ON discovery_profiles ((ip COLLATE "C"));
+
+CREATE INDEX IF NOT EXISTS provision_ip_prefix_idx ON provision ((ip COLLATE "C"));
+
+-- Status and credential profile filters, id keeps the keyset page order
+CREATE INDEX IF NOT EXISTS discovery_profiles_status_id_idx ON discovery_profiles (status, id);
+
+CREATE INDEX IF NOT EXISTS provision_status_id_idx ON provision (status, id);
+
+CREATE INDEX IF NOT EXISTS discovery_profiles_credential_profile_id_idx ON discovery_profiles (credential_profile_id, id);
+
+CREATE INDEX IF NOT EXISTS provision_credential_profile_id_idx ON provision (credential_profile_id, id);
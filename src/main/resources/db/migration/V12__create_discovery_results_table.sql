@@ -0,0 +1,12 @@
+-- Per address results of discovery profiles targeting a CIDR block or a range, one row per address that answered on the port
+CREATE TABLE IF NOT EXISTS discovery_results (
+    discovery_profile_id INT NOT NULL REFERENCES discovery_profiles(id) ON DELETE CASCADE,
+    ip TEXT NOT NULL,
+    status BOOLEAN NOT NULL,
+    step TEXT,
+    discovered_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (discovery_profile_id, ip)
+);
+
+-- Provisioning reads the discovered addresses of a range profile
+CREATE INDEX IF NOT EXISTS discovery_results_discovered_idx ON discovery_results (discovery_profile_id) WHERE status;
@@ -0,0 +1,18 @@
+-- Version of the credentials of a profile, cached discovery results are keyed on it
+ALTER TABLE credential_profiles ADD COLUMN IF NOT EXISTS version INT NOT NULL DEFAULT 1;
+
+CREATE OR REPLACE FUNCTION nms_bump_credential_version() RETURNS TRIGGER AS $$
+BEGIN
+    IF NEW.credentials IS DISTINCT FROM OLD.credentials OR NEW.system_type IS DISTINCT FROM OLD.system_type THEN
+        NEW.version := OLD.version + 1;
+    ELSE
+        NEW.version := OLD.version;
+    END IF;
+
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER credential_profiles_bump_version
+    BEFORE UPDATE ON credential_profiles
+    FOR EACH ROW EXECUTE FUNCTION nms_bump_credential_version();
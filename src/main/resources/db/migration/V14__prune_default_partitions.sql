@@ -0,0 +1,32 @@
+-- Rows outside every daily partition land in the <parent>_default partition, which dropping daily partitions never reaches.
+-- Maintenance now deletes its expired rows and reports how many it still holds, so misplaced rows can be alerted on.
+DROP FUNCTION IF EXISTS nms_maintain_partitions(TEXT, INT, INT);
+
+CREATE FUNCTION nms_maintain_partitions(parent TEXT, retention_days INT, ahead_days INT)
+    RETURNS TABLE (created INT, dropped INT, default_rows BIGINT) AS $$
+DECLARE
+    today DATE := (now() AT TIME ZONE 'UTC')::date;
+    default_partition TEXT := parent || '_default';
+    partition_key TEXT;
+BEGIN
+    created := nms_create_partitions(parent, today, today + ahead_days);
+
+    dropped := nms_drop_partitions(parent, today - retention_days);
+
+    default_rows := 0;
+
+    IF to_regclass(default_partition) IS NOT NULL THEN
+        SELECT a.attname INTO partition_key
+        FROM pg_partitioned_table p
+        JOIN pg_attribute a ON a.attrelid = p.partrelid AND a.attnum = p.partattrs[0]
+        WHERE p.partrelid = parent::regclass;
+
+        EXECUTE format('DELETE FROM %I WHERE %I < %L', default_partition, partition_key,
+                       (today - retention_days)::timestamp AT TIME ZONE 'UTC');
+
+        EXECUTE format('SELECT count(*) FROM %I', default_partition) INTO default_rows;
+    END IF;
+
+    RETURN NEXT;
+END;
+$$ LANGUAGE plpgsql;
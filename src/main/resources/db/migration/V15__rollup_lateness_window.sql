@@ -0,0 +1,101 @@
+-- The id watermark alone skipped for good any sample whose id was passed before its insert committed.
+-- Each run now also recomputes a trailing window of buckets from the samples, so late commits are picked up
+-- as long as they fall in the window when the next run starts.
+DROP FUNCTION IF EXISTS nms_rollup_metrics();
+
+-- Rolls the metric samples up into the hourly and daily tables.
+-- Hours from the start of the lateness window on are recomputed from metric_samples and replaced, so the run is
+-- idempotent there and sees every sample committed so far, whatever its id. The days of the window are rebuilt
+-- from their hourly rows. Older buckets, whose raw samples may be pruned already, only get the samples with an id
+-- past the watermark merged in.
+-- Loss bound: a sample is left out of the rollups only when its insert commits after a run passed its id and
+-- its polled_at is older than the lateness window of the next run, i.e. when it commits more than
+-- lateness_seconds minus the rollup interval after it was polled.
+CREATE OR REPLACE FUNCTION nms_rollup_metrics(lateness_seconds INT) RETURNS BIGINT AS $$
+DECLARE
+    from_id BIGINT;
+    to_id BIGINT;
+    window_start TIMESTAMPTZ;
+    window_day TIMESTAMPTZ;
+BEGIN
+    SELECT last_id INTO from_id FROM rollup_watermarks WHERE name = 'metric_samples' FOR UPDATE;
+
+    SELECT COALESCE(max(id), from_id) INTO to_id FROM metric_samples WHERE id > from_id;
+
+    window_start := date_trunc('hour', now() - make_interval(secs => lateness_seconds), 'UTC');
+
+    window_day := date_trunc('day', window_start, 'UTC');
+
+    -- New samples of buckets older than the window are merged into the existing aggregates
+    WITH numeric_samples AS (
+        SELECT s.provision_id, md.name AS metric, s.polled_at, s.value
+        FROM metric_samples s
+        JOIN metric_dictionary md ON md.id = s.metric_id
+        WHERE s.id > from_id AND s.id <= to_id AND s.polled_at < window_start
+    ),
+    hourly AS (
+        INSERT INTO metric_rollups_hourly AS h (provision_id, metric, bucket, min_value, max_value, sum_value, samples, last_value, last_at)
+        SELECT provision_id, metric, date_trunc('hour', polled_at, 'UTC'), min(value), max(value), sum(value), count(*),
+               (array_agg(value ORDER BY polled_at DESC))[1], max(polled_at)
+        FROM numeric_samples
+        GROUP BY provision_id, metric, date_trunc('hour', polled_at, 'UTC')
+        ON CONFLICT (provision_id, metric, bucket) DO UPDATE SET
+            min_value = LEAST(h.min_value, EXCLUDED.min_value),
+            max_value = GREATEST(h.max_value, EXCLUDED.max_value),
+            sum_value = h.sum_value + EXCLUDED.sum_value,
+            samples = h.samples + EXCLUDED.samples,
+            last_value = CASE WHEN EXCLUDED.last_at >= h.last_at THEN EXCLUDED.last_value ELSE h.last_value END,
+            last_at = GREATEST(h.last_at, EXCLUDED.last_at)
+        RETURNING 1
+    )
+    INSERT INTO metric_rollups_daily AS d (provision_id, metric, bucket, min_value, max_value, sum_value, samples, last_value, last_at)
+    SELECT provision_id, metric, date_trunc('day', polled_at, 'UTC'), min(value), max(value), sum(value), count(*),
+           (array_agg(value ORDER BY polled_at DESC))[1], max(polled_at)
+    FROM numeric_samples
+    WHERE polled_at < window_day
+    GROUP BY provision_id, metric, date_trunc('day', polled_at, 'UTC')
+    ON CONFLICT (provision_id, metric, bucket) DO UPDATE SET
+        min_value = LEAST(d.min_value, EXCLUDED.min_value),
+        max_value = GREATEST(d.max_value, EXCLUDED.max_value),
+        sum_value = d.sum_value + EXCLUDED.sum_value,
+        samples = d.samples + EXCLUDED.samples,
+        last_value = CASE WHEN EXCLUDED.last_at >= d.last_at THEN EXCLUDED.last_value ELSE d.last_value END,
+        last_at = GREATEST(d.last_at, EXCLUDED.last_at);
+
+    -- Hours of the window are replaced by their aggregate over every sample visible now
+    INSERT INTO metric_rollups_hourly AS h (provision_id, metric, bucket, min_value, max_value, sum_value, samples, last_value, last_at)
+    SELECT s.provision_id, md.name, date_trunc('hour', s.polled_at, 'UTC'), min(s.value), max(s.value), sum(s.value), count(*),
+           (array_agg(s.value ORDER BY s.polled_at DESC))[1], max(s.polled_at)
+    FROM metric_samples s
+    JOIN metric_dictionary md ON md.id = s.metric_id
+    WHERE s.polled_at >= window_start
+    GROUP BY s.provision_id, md.name, date_trunc('hour', s.polled_at, 'UTC')
+    ON CONFLICT (provision_id, metric, bucket) DO UPDATE SET
+        min_value = EXCLUDED.min_value,
+        max_value = EXCLUDED.max_value,
+        sum_value = EXCLUDED.sum_value,
+        samples = EXCLUDED.samples,
+        last_value = EXCLUDED.last_value,
+        last_at = EXCLUDED.last_at;
+
+    -- Days of the window are replaced by the aggregate of their hours, which are all complete at this point
+    INSERT INTO metric_rollups_daily AS d (provision_id, metric, bucket, min_value, max_value, sum_value, samples, last_value, last_at)
+    SELECT provision_id, metric, date_trunc('day', bucket, 'UTC'), min(min_value), max(max_value), sum(sum_value), sum(samples),
+           (array_agg(last_value ORDER BY last_at DESC))[1], max(last_at)
+    FROM metric_rollups_hourly
+    WHERE bucket >= window_day
+    GROUP BY provision_id, metric, date_trunc('day', bucket, 'UTC')
+    ON CONFLICT (provision_id, metric, bucket) DO UPDATE SET
+        min_value = EXCLUDED.min_value,
+        max_value = EXCLUDED.max_value,
+        sum_value = EXCLUDED.sum_value,
+        samples = EXCLUDED.samples,
+        last_value = EXCLUDED.last_value,
+        last_at = EXCLUDED.last_at;
+
+    -- next_id is no longer needed, the window covers the inserts committing late
+    UPDATE rollup_watermarks SET last_id = to_id, next_id = to_id WHERE name = 'metric_samples';
+
+    RETURN to_id - from_id;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,27 @@
+CREATE OR REPLACE FUNCTION nms_notify_row_change() RETURNS TRIGGER AS $$
+DECLARE
+    row_id INT;
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        row_id := OLD.id;
+    ELSE
+        row_id := NEW.id;
+    END IF;
+
+    PERFORM pg_notify('nms_row_changes', json_build_object('table', TG_TABLE_NAME, 'op', TG_OP, 'id', row_id)::text);
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER credential_profiles_notify_row_change
+    AFTER INSERT OR UPDATE OR DELETE ON credential_profiles
+    FOR EACH ROW EXECUTE FUNCTION nms_notify_row_change();
+
+CREATE TRIGGER discovery_profiles_notify_row_change
+    AFTER INSERT OR UPDATE OR DELETE ON discovery_profiles
+    FOR EACH ROW EXECUTE FUNCTION nms_notify_row_change();
+
+CREATE TRIGGER provision_notify_row_change
+    AFTER INSERT OR UPDATE OR DELETE ON provision
+    FOR EACH ROW EXECUTE FUNCTION nms_notify_row_change();
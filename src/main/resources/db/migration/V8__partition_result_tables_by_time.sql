@@ -0,0 +1,137 @@
+-- Daily range partitions named <parent>_YYYYMMDD, bounds are UTC days
+CREATE OR REPLACE FUNCTION nms_create_partitions(parent TEXT, from_day DATE, to_day DATE) RETURNS INT AS $$
+DECLARE
+    partition_day DATE := from_day;
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    WHILE partition_day <= to_day LOOP
+        partition_name := parent || '_' || to_char(partition_day, 'YYYYMMDD');
+
+        IF to_regclass(partition_name) IS NULL THEN
+            BEGIN
+                EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)', partition_name, parent,
+                               partition_day::timestamp AT TIME ZONE 'UTC', (partition_day + 1)::timestamp AT TIME ZONE 'UTC');
+
+                created := created + 1;
+            EXCEPTION WHEN check_violation THEN
+                -- Rows for this day already sit in the default partition
+                RAISE WARNING 'Skipping partition %, default partition holds rows for it', partition_name;
+            END;
+        END IF;
+
+        partition_day := partition_day + 1;
+    END LOOP;
+
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION nms_drop_partitions(parent TEXT, before_day DATE) RETURNS INT AS $$
+DECLARE
+    partition_name TEXT;
+    dropped INT := 0;
+BEGIN
+    FOR partition_name IN
+        SELECT child.relname
+        FROM pg_inherits
+        JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+        JOIN pg_class parent_table ON parent_table.oid = pg_inherits.inhparent
+        WHERE parent_table.relname = parent
+          AND child.relname ~ ('^' || parent || '_[0-9]{8}$')
+          AND to_date(right(child.relname, 8), 'YYYYMMDD') < before_day
+    LOOP
+        EXECUTE format('DROP TABLE %I', partition_name);
+
+        dropped := dropped + 1;
+    END LOOP;
+
+    RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Creates partitions up to ahead_days in the future and drops the ones older than retention_days
+CREATE OR REPLACE FUNCTION nms_maintain_partitions(parent TEXT, retention_days INT, ahead_days INT)
+    RETURNS TABLE (created INT, dropped INT) AS $$
+DECLARE
+    today DATE := (now() AT TIME ZONE 'UTC')::date;
+BEGIN
+    created := nms_create_partitions(parent, today, today + ahead_days);
+
+    dropped := nms_drop_partitions(parent, today - retention_days);
+
+    RETURN NEXT;
+END;
+$$ LANGUAGE plpgsql;
+
+-- polled_results
+ALTER TABLE polled_results RENAME TO polled_results_legacy;
+
+ALTER INDEX polled_results_pkey RENAME TO polled_results_legacy_pkey;
+
+ALTER TABLE polled_results_legacy DROP CONSTRAINT polled_results_provision_id_fkey;
+
+ALTER SEQUENCE polled_results_id_seq OWNED BY NONE;
+
+CREATE TABLE polled_results (
+    id INT NOT NULL DEFAULT nextval('polled_results_id_seq'),
+    provision_id INT NOT NULL REFERENCES provision(id) ON DELETE CASCADE,
+    metrics JSONB NOT NULL,
+    polled_at TIMESTAMPTZ NOT NULL,
+    PRIMARY KEY (id, polled_at)
+) PARTITION BY RANGE (polled_at);
+
+ALTER SEQUENCE polled_results_id_seq OWNED BY polled_results.id;
+
+CREATE INDEX polled_results_provision_id_polled_at_idx ON polled_results (provision_id, polled_at);
+
+CREATE TABLE polled_results_default PARTITION OF polled_results DEFAULT;
+
+SELECT nms_create_partitions('polled_results',
+       COALESCE((min(polled_at::timestamptz) AT TIME ZONE 'UTC')::date, (now() AT TIME ZONE 'UTC')::date),
+       (now() AT TIME ZONE 'UTC')::date + 7)
+FROM polled_results_legacy;
+
+INSERT INTO polled_results (id, provision_id, metrics, polled_at)
+SELECT id, provision_id, metrics, polled_at::timestamptz FROM polled_results_legacy;
+
+DROP TABLE polled_results_legacy;
+
+-- availability_polling_results
+ALTER TABLE availability_polling_results RENAME TO availability_polling_results_legacy;
+
+ALTER INDEX availability_polling_results_pkey RENAME TO availability_polling_results_legacy_pkey;
+
+ALTER TABLE availability_polling_results_legacy DROP CONSTRAINT availability_polling_results_provision_id_fkey;
+
+ALTER TABLE availability_polling_results_legacy DROP CONSTRAINT availability_polling_results_packet_loss_percentage_check;
+
+ALTER SEQUENCE availability_polling_results_id_seq OWNED BY NONE;
+
+CREATE TABLE availability_polling_results (
+    id INT NOT NULL DEFAULT nextval('availability_polling_results_id_seq'),
+    provision_id INT,
+    packets_send INT NOT NULL,
+    packets_received INT NOT NULL,
+    packet_loss_percentage INT NOT NULL CHECK (packet_loss_percentage BETWEEN 0 AND 100),
+    "timestamp" TIMESTAMPTZ NOT NULL,
+    PRIMARY KEY (id, "timestamp"),
+    FOREIGN KEY (provision_id) REFERENCES provision(id) ON DELETE RESTRICT
+) PARTITION BY RANGE ("timestamp");
+
+ALTER SEQUENCE availability_polling_results_id_seq OWNED BY availability_polling_results.id;
+
+CREATE INDEX availability_polling_results_provision_id_timestamp_idx ON availability_polling_results (provision_id, "timestamp");
+
+CREATE TABLE availability_polling_results_default PARTITION OF availability_polling_results DEFAULT;
+
+SELECT nms_create_partitions('availability_polling_results',
+       COALESCE((min("timestamp"::timestamptz) AT TIME ZONE 'UTC')::date, (now() AT TIME ZONE 'UTC')::date),
+       (now() AT TIME ZONE 'UTC')::date + 7)
+FROM availability_polling_results_legacy;
+
+INSERT INTO availability_polling_results (id, provision_id, packets_send, packets_received, packet_loss_percentage, "timestamp")
+SELECT id, provision_id, packets_send, packets_received, packet_loss_percentage, "timestamp"::timestamptz
+FROM availability_polling_results_legacy;
+
+DROP TABLE availability_polling_results_legacy;
@@ -0,0 +1,88 @@
+-- Per device and metric aggregates of the numeric polled values, buckets are UTC hours and days.
+-- The sum is kept instead of the average so new samples can be merged incrementally.
+CREATE TABLE IF NOT EXISTS metric_rollups_hourly (
+    provision_id INT NOT NULL REFERENCES provision(id) ON DELETE CASCADE,
+    metric TEXT NOT NULL,
+    bucket TIMESTAMPTZ NOT NULL,
+    min_value DOUBLE PRECISION NOT NULL,
+    max_value DOUBLE PRECISION NOT NULL,
+    sum_value DOUBLE PRECISION NOT NULL,
+    samples INT NOT NULL,
+    last_value DOUBLE PRECISION NOT NULL,
+    last_at TIMESTAMPTZ NOT NULL,
+    PRIMARY KEY (provision_id, metric, bucket)
+);
+
+CREATE TABLE IF NOT EXISTS metric_rollups_daily (LIKE metric_rollups_hourly INCLUDING ALL);
+
+ALTER TABLE metric_rollups_daily ADD FOREIGN KEY (provision_id) REFERENCES provision(id) ON DELETE CASCADE;
+
+-- Raw rows up to last_id are rolled up. Rows up to next_id were already visible on the previous run,
+-- waiting one run lets inserts that took a lower id but committed late become visible before they are passed.
+CREATE TABLE IF NOT EXISTS rollup_watermarks (
+    name TEXT PRIMARY KEY,
+    last_id BIGINT NOT NULL DEFAULT 0,
+    next_id BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO rollup_watermarks (name) VALUES ('polled_results') ON CONFLICT DO NOTHING;
+
+-- Leading number of a polled value, NULL for values that are not numeric like hostname or uptime
+CREATE OR REPLACE FUNCTION nms_numeric_value(value TEXT) RETURNS DOUBLE PRECISION AS $$
+    SELECT (regexp_match(value, '^\s*(-?[0-9]+(\.[0-9]+)?)'))[1]::DOUBLE PRECISION;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- Rolls up the raw rows that became safe to aggregate since the last run, returns the number of raw rows processed
+CREATE OR REPLACE FUNCTION nms_rollup_metrics() RETURNS BIGINT AS $$
+DECLARE
+    from_id BIGINT;
+    to_id BIGINT;
+    processed BIGINT;
+BEGIN
+    SELECT last_id, next_id INTO from_id, to_id FROM rollup_watermarks WHERE name = 'polled_results' FOR UPDATE;
+
+    WITH samples AS (
+        SELECT r.provision_id, m.key AS metric, r.polled_at, nms_numeric_value(m.value) AS value
+        FROM polled_results r, jsonb_each_text(r.metrics) m
+        WHERE r.id > from_id AND r.id <= to_id
+    ),
+    numeric_samples AS (
+        SELECT * FROM samples WHERE value IS NOT NULL
+    ),
+    hourly AS (
+        INSERT INTO metric_rollups_hourly AS h (provision_id, metric, bucket, min_value, max_value, sum_value, samples, last_value, last_at)
+        SELECT provision_id, metric, date_trunc('hour', polled_at, 'UTC'), min(value), max(value), sum(value), count(*),
+               (array_agg(value ORDER BY polled_at DESC))[1], max(polled_at)
+        FROM numeric_samples
+        GROUP BY provision_id, metric, date_trunc('hour', polled_at, 'UTC')
+        ON CONFLICT (provision_id, metric, bucket) DO UPDATE SET
+            min_value = LEAST(h.min_value, EXCLUDED.min_value),
+            max_value = GREATEST(h.max_value, EXCLUDED.max_value),
+            sum_value = h.sum_value + EXCLUDED.sum_value,
+            samples = h.samples + EXCLUDED.samples,
+            last_value = CASE WHEN EXCLUDED.last_at >= h.last_at THEN EXCLUDED.last_value ELSE h.last_value END,
+            last_at = GREATEST(h.last_at, EXCLUDED.last_at)
+        RETURNING 1
+    )
+    INSERT INTO metric_rollups_daily AS d (provision_id, metric, bucket, min_value, max_value, sum_value, samples, last_value, last_at)
+    SELECT provision_id, metric, date_trunc('day', polled_at, 'UTC'), min(value), max(value), sum(value), count(*),
+           (array_agg(value ORDER BY polled_at DESC))[1], max(polled_at)
+    FROM numeric_samples
+    GROUP BY provision_id, metric, date_trunc('day', polled_at, 'UTC')
+    ON CONFLICT (provision_id, metric, bucket) DO UPDATE SET
+        min_value = LEAST(d.min_value, EXCLUDED.min_value),
+        max_value = GREATEST(d.max_value, EXCLUDED.max_value),
+        sum_value = d.sum_value + EXCLUDED.sum_value,
+        samples = d.samples + EXCLUDED.samples,
+        last_value = CASE WHEN EXCLUDED.last_at >= d.last_at THEN EXCLUDED.last_value ELSE d.last_value END,
+        last_at = GREATEST(d.last_at, EXCLUDED.last_at);
+
+    processed := GREATEST(to_id - from_id, 0);
+
+    UPDATE rollup_watermarks
+    SET last_id = to_id, next_id = GREATEST(to_id, (SELECT COALESCE(max(id), 0) FROM polled_results))
+    WHERE name = 'polled_results';
+
+    RETURN processed;
+END;
+$$ LANGUAGE plpgsql;